@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The plain allocation baseline for {@link PoolBenchmark}, using the same
+ *  objects and settings. It only depends on the object size, so it is kept
+ *  apart from the pool parameters.
+ * @author Sebastian Hjelm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationBenchmark
+{
+  @Param({ "SMALL", "LARGE" })
+  public String size;
+  
+  private Supplier<Poolable> factory_;
+  
+  
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    factory_ = "LARGE".equals(size) ? PoolBenchmark.LargeObject::new : Point::new;
+  }
+  
+  
+  @Benchmark
+  public Poolable allocate()
+  {
+    return factory_.get();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link QuickHull3D} compared to the 2D hull algorithms. The 2D
+ *  benchmarks use the same points projected on the xy plane, which gives an
+ *  idea of the cost of the third dimension for the same input. Points are
+ *  either spread in a cube (few points on the hull) or on the surface of a
+ *  sphere (all points on the 3D hull, and many near the 2D hull).
+ * @author Sebastian Hjelm
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HullBenchmark
+{
+  @Param({ "CUBE", "SPHERE" })
+  public String distribution;
+  
+  @Param({ "10000", "1000000" })
+  public int count;
+  
+  private float[] xs_;
+  private float[] ys_;
+  private float[] zs_;
+  
+  private PointBuffer projected_;
+  private HullWorkspace workspace_;
+  private QuickHull3D hull3D_;
+  
+  
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    Random random = new Random(0);
+    
+    xs_ = new float[count];
+    ys_ = new float[count];
+    zs_ = new float[count];
+    for (int i = 0; i < count; i++)
+    {
+      double x = random.nextGaussian();
+      double y = random.nextGaussian();
+      double z = random.nextGaussian();
+      double scale = 1;
+      
+      if ("SPHERE".equals(distribution))
+      {
+        scale = 1 / Math.sqrt(x * x + y * y + z * z);
+      }
+      else
+      {
+        x = random.nextDouble();
+        y = random.nextDouble();
+        z = random.nextDouble();
+      }
+      
+      xs_[i] = (float) (x * scale);
+      ys_[i] = (float) (y * scale);
+      zs_[i] = (float) (z * scale);
+    }
+    
+    projected_ = new PointBuffer(xs_, ys_, count);
+    workspace_ = new HullWorkspace(count);
+    hull3D_ = new QuickHull3D();
+  }
+  
+  
+  @Benchmark
+  public int quickHull2D()
+  {
+    return QuickHull.computeIndices(projected_, workspace_);
+  }
+  
+  @Benchmark
+  public int monotoneChain2D()
+  {
+    return MonotoneChain.computeIndices(projected_, workspace_);
+  }
+  
+  @Benchmark
+  public int quickHull3D()
+  {
+    return hull3D_.compute(xs_, ys_, zs_, count);
+  }
+}
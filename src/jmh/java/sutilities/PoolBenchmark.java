@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput benchmarks of {@link Pool}, see {@link AllocationBenchmark} for
+ *  the plain allocation they are compared to and {@link PoolLatencyBenchmark}
+ *  for the time of single operations. Each benchmark is run for every pool
+ *  mode, object size, hit ratio and prefill. Run with {@code gradlew jmh},
+ *  which also enables the GC profiler so the allocation rate of each benchmark
+ *  is reported, or with {@code gradlew jmhThreadSweep} to run them for a range
+ *  of thread counts.
+ * </br>
+ * </br>The hit ratio is controlled by storing only that fraction of the
+ *  acquired elements, the rest are dropped. In steady state the pool is then
+ *  empty for the same fraction of the acquires, which makes them misses.
+ * @author Sebastian Hjelm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PoolBenchmark
+{
+  @Param({ "SYNCHRONIZED", "LOCK_FREE", "THREAD_CACHED" })
+  public Pool.Mode mode;
+  
+  @Param({ "SMALL", "LARGE" })
+  public String size;
+  
+  @Param({ "1.0", "0.9", "0.5" })
+  public double hitRatio;
+  
+  @Param({ "0", "1024" })
+  public int prefill;
+  
+  private Pool<Poolable> pool_;
+  
+  
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    if ("LARGE".equals(size))
+      pool_ = new Pool<Poolable>(mode, LargeObject::new);
+    else
+      pool_ = new Pool<Poolable>(mode, Point::new);
+    
+    pool_.allocate(prefill);
+  }
+  
+  
+  @Benchmark
+  public void acquireStore(Blackhole blackhole)
+  {
+    Poolable element = pool_.acquire();
+    blackhole.consume(element);
+    
+    if (hitRatio >= 1 || ThreadLocalRandom.current().nextDouble() < hitRatio)
+      pool_.store(element);
+  }
+  
+  
+  @Benchmark
+  public void acquireStoreBatch(Batch batch, Blackhole blackhole)
+  {
+    Poolable[] elements = batch.elements;
+    
+    pool_.acquireAll(elements, elements.length);
+    blackhole.consume(elements);
+    
+    int stored = hitRatio >= 1 ? elements.length : (int) (elements.length * hitRatio);
+    pool_.storeAll(elements, stored);
+  }
+  
+  
+  /**
+   * The per-thread array used by the batch benchmarks.
+   */
+  @State(Scope.Thread)
+  public static class Batch
+  {
+    public Poolable[] elements = new Poolable[64];
+  }
+  
+  
+  /**
+   * A pooled object that is considerably larger than a {@link Point}.
+   */
+  public static class LargeObject implements Poolable
+  {
+    public long[] payload = new long[128];
+  }
+}
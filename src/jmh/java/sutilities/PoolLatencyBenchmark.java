@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The latency counterpart of {@link PoolBenchmark}. The time of single
+ *  acquires and stores is sampled, so the reported percentiles show the cost
+ *  of the occasional miss or contended access that the throughput hides. To
+ *  keep the run short only small objects and a prefilled pool are measured,
+ *  with and without misses.
+ * @author Sebastian Hjelm
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PoolLatencyBenchmark
+{
+  @Param({ "SYNCHRONIZED", "LOCK_FREE", "THREAD_CACHED" })
+  public Pool.Mode mode;
+  
+  @Param({ "1.0", "0.5" })
+  public double hitRatio;
+  
+  private Pool<Point> pool_;
+  
+  
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    pool_ = new Pool<Point>(mode, Point::new);
+    pool_.allocate(1024);
+  }
+  
+  
+  @Benchmark
+  public void acquireStore(Blackhole blackhole)
+  {
+    Point element = pool_.acquire();
+    blackhole.consume(element);
+    
+    if (hitRatio >= 1 || ThreadLocalRandom.current().nextDouble() < hitRatio)
+      pool_.store(element);
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+/**
+ * Picks the hull algorithm based on how many points survive the pruning step.
+ *  When most points are discarded by the pruning the hull is likely small and
+ *  QuickHull finishes quickly, but when most points remain (points on or near
+ *  a circle, for example) many of them are probably on the hull, which is
+ *  QuickHull's worst case, so the monotone chain algorithm is used instead.
+ * @author Sebastian Hjelm
+ * @see ConvexHull#ADAPTIVE
+ */
+final class AdaptiveHull
+{
+  private AdaptiveHull()
+  {
+  }
+  
+  
+  static int computeIndices(PointBuffer points, HullWorkspace workspace)
+  {
+    return computeIndices(points.getXs(), points.getYs(), 0, points.size(), workspace);
+  }
+  
+  
+  static int computeIndices(float[] xs, float[] ys, int offset, int count, HullWorkspace workspace)
+  {
+    if (count <= 0)
+      return 0;
+    
+    workspace.ensureCapacity(count + 2);
+    
+    int n = QuickHull.prune(xs, ys, offset, count, workspace.candidates);
+    if (n > count / 2)
+      return MonotoneChain.computeCandidates(xs, ys, n, workspace);
+    return QuickHull.computeCandidates(xs, ys, n, workspace);
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An approximate convex hull that can be computed in one pass over any amount
+ *  of points, using memory proportional to 1 / epsilon only. This is useful
+ *  when the exact hull isn't needed, for example for visualisation or coarse
+ *  collision tests of very large point sets.
+ * </br>
+ * </br>The x axis is divided in vertical strips, and only the points with the
+ *  lowest and highest y coordinates in every strip are kept, together with
+ *  the points with the lowest and highest x coordinates (this is the algorithm
+ *  of Bentley, Faust and Preparata). The hull of the kept points is returned,
+ *  which is a subset of the exact hull points. Every input point is inside
+ *  the returned hull or at most one strip width outside of it, and there are
+ *  enough strips to keep the strip width below epsilon times the width of the
+ *  points along the x axis. When points outside the current strips arrive the
+ *  strips are made twice as wide by merging them pairwise, so the range of
+ *  the points doesn't have to be known in advance.
+ * </br>
+ * </br>This class is not thread safe.
+ * @author Sebastian Hjelm
+ */
+public class ApproximateHull
+{
+  private final float epsilon_;
+  private final int strips_;
+  
+  private double origin_;
+  private double width_;
+  private boolean empty_;
+  
+  private final boolean[] used_;
+  private final float[] lowXs_;
+  private final float[] lowYs_;
+  private final float[] highXs_;
+  private final float[] highYs_;
+  
+  // The points with the smallest and largest x, each with the lowest and
+  //  highest y of the points with that x
+  private final float[] extremes_;
+  
+  private final PointBuffer buffer_;
+  private final HullWorkspace workspace_;
+  
+  
+  /**
+   * Creates a new approximate hull with the specified error bound.
+   * @param epsilon The largest distance from the returned hull to any point,
+   *  relative to the width of the points along the x axis
+   * @throws IllegalArgumentException If epsilon isn't positive
+   */
+  public ApproximateHull(float epsilon)
+  {
+    if (!(epsilon > 0) || Float.isInfinite(epsilon))
+      throw new IllegalArgumentException("Epsilon must be positive: " + epsilon);
+    
+    epsilon_ = epsilon;
+    
+    // An even amount of strips so they can be merged pairwise, four times as
+    //  many as needed since the strips may cover up to four times the width of
+    //  the points: the first two points span half of the strips, and when the
+    //  strips are widened to the left they may already extend as far to the
+    //  right of the points
+    strips_ = 4 * (int) Math.min(1 << 23, Math.ceil(1 / epsilon));
+    
+    used_ = new boolean[strips_];
+    lowXs_ = new float[strips_];
+    lowYs_ = new float[strips_];
+    highXs_ = new float[strips_];
+    highYs_ = new float[strips_];
+    extremes_ = new float[8];
+    
+    buffer_ = new PointBuffer(strips_ * 2 + 4);
+    workspace_ = new HullWorkspace(strips_ * 2 + 4);
+    
+    clear();
+  }
+  
+  
+  /**
+   * Computes the approximate convex hull of the specified points.
+   * @param points The points
+   * @param epsilon The largest distance from the returned hull to any point,
+   *  relative to the width of the points along the x axis
+   * @return The hull points, in the same order as {@link #getHull()}
+   * @throws IllegalArgumentException If epsilon isn't positive
+   */
+  public static List<Point> compute(Point[] points, float epsilon)
+  {
+    ApproximateHull hull = new ApproximateHull(epsilon);
+    for (Point p : points)
+      hull.add(p.x, p.y);
+    
+    return hull.getHull();
+  }
+  
+  
+  /**
+   * Returns the error bound of this hull.
+   * @return The epsilon
+   */
+  public float getEpsilon()
+  {
+    return epsilon_;
+  }
+  
+  
+  /**
+   * Adds the specified point.
+   * @param point The point to add
+   */
+  public void add(Point point)
+  {
+    add(point.x, point.y);
+  }
+  
+  
+  /**
+   * Adds all the points of the specified buffer.
+   * @param points The points to add
+   */
+  public void addAll(PointBuffer points)
+  {
+    float[] xs = points.getXs();
+    float[] ys = points.getYs();
+    for (int i = 0; i < points.size(); i++)
+      add(xs[i], ys[i]);
+  }
+  
+  
+  /**
+   * Adds the specified point.
+   * @param x The x coordinate
+   * @param y The y coordinate
+   */
+  public void add(float x, float y)
+  {
+    if (empty_)
+    {
+      empty_ = false;
+      origin_ = x;
+      width_ = 0;
+      Arrays.fill(extremes_, 0, 4, x);
+      extremes_[1] = extremes_[3] = y;
+      Arrays.fill(extremes_, 4, 8, x);
+      extremes_[5] = extremes_[7] = y;
+    }
+    else
+    {
+      updateExtremes(x, y);
+    }
+    
+    int strip = getStrip(x);
+    if (!used_[strip])
+    {
+      used_[strip] = true;
+      lowXs_[strip] = highXs_[strip] = x;
+      lowYs_[strip] = highYs_[strip] = y;
+    }
+    else if (y < lowYs_[strip])
+    {
+      lowXs_[strip] = x;
+      lowYs_[strip] = y;
+    }
+    else if (y > highYs_[strip])
+    {
+      highXs_[strip] = x;
+      highYs_[strip] = y;
+    }
+  }
+  
+  
+  /**
+   * Returns the approximate hull of the points added so far, starting with the
+   *  point with the lowest x coordinate and proceeding in clockwise order when
+   *  the y axis points up.
+   * @return The hull points
+   */
+  public List<Point> getHull()
+  {
+    buffer_.clear();
+    if (!empty_)
+    {
+      for (int i = 0; i < 8; i += 2)
+        buffer_.add(extremes_[i], extremes_[i + 1]);
+      
+      for (int i = 0; i < strips_; i++)
+      {
+        if (used_[i])
+        {
+          buffer_.add(lowXs_[i], lowYs_[i]);
+          buffer_.add(highXs_[i], highYs_[i]);
+        }
+      }
+    }
+    
+    int size = MonotoneChain.computeIndices(buffer_, workspace_);
+    int[] hull = workspace_.getHull();
+    
+    List<Point> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++)
+      result.add(buffer_.get(hull[i]));
+    
+    return result;
+  }
+  
+  
+  /**
+   * Removes all points.
+   */
+  public void clear()
+  {
+    empty_ = true;
+    Arrays.fill(used_, false);
+  }
+  
+  
+  private void updateExtremes(float x, float y)
+  {
+    if (x < extremes_[0])
+    {
+      extremes_[0] = extremes_[2] = x;
+      extremes_[1] = extremes_[3] = y;
+    }
+    else if (x == extremes_[0])
+    {
+      extremes_[1] = Math.min(extremes_[1], y);
+      extremes_[3] = Math.max(extremes_[3], y);
+    }
+    
+    if (x > extremes_[4])
+    {
+      extremes_[4] = extremes_[6] = x;
+      extremes_[5] = extremes_[7] = y;
+    }
+    else if (x == extremes_[4])
+    {
+      extremes_[5] = Math.min(extremes_[5], y);
+      extremes_[7] = Math.max(extremes_[7], y);
+    }
+  }
+  
+  
+  /**
+   * Returns the strip of the specified x coordinate, widening the strips
+   *  until they include it.
+   */
+  private int getStrip(float x)
+  {
+    if (width_ == 0)
+    {
+      if (x == origin_)
+        return 0;
+      
+      // All points so far are in the first strip, make the strips wide enough
+      //  for the new point to end up in the middle strip
+      width_ = Math.abs(x - origin_) / (strips_ / 2);
+      if (x < origin_)
+      {
+        origin_ = x;
+        move(0, strips_ / 2);
+      }
+    }
+    
+    while (x < origin_)
+      widen(true);
+    while (x >= origin_ + strips_ * width_)
+      widen(false);
+    
+    return Math.max(0, Math.min(strips_ - 1, (int) ((x - origin_) / width_)));
+  }
+  
+  
+  /**
+   * Merges the strips pairwise, so they cover twice the width. The covered
+   *  range is either extended to the left or to the right.
+   */
+  private void widen(boolean left)
+  {
+    int half = strips_ / 2;
+    if (left)
+    {
+      for (int i = strips_ - 1; i >= half; i--)
+        merge(2 * (i - half), 2 * (i - half) + 1, i);
+      for (int i = 0; i < half; i++)
+        used_[i] = false;
+      origin_ -= strips_ * width_;
+    }
+    else
+    {
+      for (int i = 0; i < half; i++)
+        merge(2 * i, 2 * i + 1, i);
+      for (int i = half; i < strips_; i++)
+        used_[i] = false;
+    }
+    
+    width_ *= 2;
+  }
+  
+  
+  /**
+   * Puts the combination of strips a and b in the target strip.
+   */
+  private void merge(int a, int b, int target)
+  {
+    if (used_[a] && used_[b])
+    {
+      if (lowYs_[b] < lowYs_[a])
+      {
+        lowXs_[a] = lowXs_[b];
+        lowYs_[a] = lowYs_[b];
+      }
+      if (highYs_[b] > highYs_[a])
+      {
+        highXs_[a] = highXs_[b];
+        highYs_[a] = highYs_[b];
+      }
+      move(a, target);
+    }
+    else if (used_[a])
+    {
+      move(a, target);
+    }
+    else if (used_[b])
+    {
+      move(b, target);
+    }
+    else
+    {
+      used_[target] = false;
+    }
+  }
+  
+  
+  private void move(int from, int to)
+  {
+    if (from == to)
+      return;
+    
+    used_[to] = used_[from];
+    lowXs_[to] = lowXs_[from];
+    lowYs_[to] = lowYs_[from];
+    highXs_[to] = highXs_[from];
+    highYs_[to] = highYs_[from];
+    used_[from] = false;
+  }
+}
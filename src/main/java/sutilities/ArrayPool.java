@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.lang.reflect.Array;
+import java.util.function.IntFunction;
+
+/**
+ * A pool of arrays, typically primitive arrays such as {@code float[]} that
+ *  can't be pooled by {@link Pool}. The arrays are divided into size classes
+ *  where every size class is a power of two, and an array acquired from the
+ *  pool has the length of the smallest size class that can hold the requested
+ *  amount of elements. Requests larger than the largest size class are
+ *  allocated with the exact length and aren't pooled.
+ * </br>
+ * </br>Each thread keeps a few idle arrays of every small size class (up to
+ *  4096 elements) to itself, in the same way as a {@link Pool} in the
+ *  {@link Pool.Mode#THREAD_CACHED} mode, so a thread that releases the arrays
+ *  it acquires rarely touches any shared state. Larger arrays are only kept in
+ *  storage shared by all threads, so they aren't pinned to threads that
+ *  rarely use them.
+ * </br>
+ * </br>This class is thread safe.
+ * @author Sebastian Hjelm
+ *
+ * @param <A> The type of arrays in the pool, for example {@code float[]}
+ */
+public class ArrayPool<A>
+{
+  /**
+   * Size classes with longer arrays than this aren't cached per thread, to
+   *  avoid pinning large arrays to threads that rarely use them. With eight
+   *  arrays per size class a thread caches at most about 256 kB of 4-byte
+   *  elements per pool, larger arrays always go to the shared storage.
+   */
+  private static final int MAX_CACHED_LENGTH = 1 << 12;
+  /**
+   * The amount of arrays of each size class every thread may cache.
+   */
+  private static final int THREAD_CACHE_SIZE = 8;
+  
+  private IntFunction<A> factory_;
+  
+  private int minShift_;
+  private int maxShift_;
+  
+  private PoolStorage<A>[] classes_;
+  
+  private PoolMetrics metrics_;
+  
+  
+  /**
+   * Creates a new pool of arrays.
+   * @param factory The factory that creates arrays of a given length, for
+   *  example {@code float[]::new}
+   * @param minLength The length of the smallest size class, rounded up to a
+   *  power of two
+   * @param maxLength The length of the largest size class, rounded up to a
+   *  power of two, longer arrays aren't pooled
+   * @throws NullPointerException If the factory is <code>null</code>
+   * @throws IllegalArgumentException If any length is zero or less or larger
+   *  than 2^30, or if the minimum length exceeds the maximum length
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public ArrayPool(IntFunction<A> factory, int minLength, int maxLength)
+  {
+    if (factory == null)
+      throw new NullPointerException("The factory can't be null!");
+    if (minLength <= 0 || maxLength <= 0)
+      throw new IllegalArgumentException("The lengths must be positive!");
+    if (minLength > maxLength)
+      throw new IllegalArgumentException("The minimum length can't exceed the maximum length!");
+    if (maxLength > 1 << 30)
+      throw new IllegalArgumentException("The lengths can't exceed 2^30!");
+    
+    factory_  = factory;
+    minShift_ = shiftOf(minLength);
+    maxShift_ = shiftOf(maxLength);
+    
+    classes_ = new PoolStorage[maxShift_ - minShift_ + 1];
+    for (int i = 0; i < classes_.length; i++)
+    {
+      if (1 << (minShift_ + i) <= MAX_CACHED_LENGTH)
+        classes_[i] = new ThreadCachedPoolStorage<A>(new LockFreePoolStorage<A>(), THREAD_CACHE_SIZE);
+      else
+        classes_[i] = new LockFreePoolStorage<A>();
+    }
+    
+    metrics_ = new PoolMetrics();
+  }
+  
+  
+  /**
+   * Creates a new pool of {@code float[]} with size classes from 16 to 2^20
+   *  elements.
+   * @return The new pool
+   */
+  public static ArrayPool<float[]> ofFloats()
+  {
+    return new ArrayPool<float[]>(float[]::new, 16, 1 << 20);
+  }
+  
+  /**
+   * Creates a new pool of {@code int[]} with size classes from 16 to 2^20
+   *  elements.
+   * @return The new pool
+   */
+  public static ArrayPool<int[]> ofInts()
+  {
+    return new ArrayPool<int[]>(int[]::new, 16, 1 << 20);
+  }
+  
+  /**
+   * Creates a new pool of {@code byte[]} with size classes from 16 to 2^20
+   *  elements.
+   * @return The new pool
+   */
+  public static ArrayPool<byte[]> ofBytes()
+  {
+    return new ArrayPool<byte[]>(byte[]::new, 16, 1 << 20);
+  }
+  
+  
+  /**
+   * Acquires an array with at least the specified length. The content of the
+   *  array is undefined, it may contain data from its previous use.
+   * @param minLength The minimum length of the array
+   * @return An array with at least the specified length
+   * @throws IllegalArgumentException If the length is negative
+   */
+  public A acquire(int minLength)
+  {
+    if (minLength < 0)
+      throw new IllegalArgumentException("The length can't be negative!");
+    
+    int shift = Math.max(minShift_, shiftOf(minLength));
+    
+    A result = null;
+    if (shift > maxShift_)
+    {
+      result = createInstance(minLength);
+      metrics_.acquired.increment();
+    }
+    else
+    {
+      result = classes_[shift - minShift_].poll();
+      if (result != null)
+      {
+        metrics_.idle.decrement();
+        metrics_.hits.increment();
+        metrics_.acquired.increment();
+      }
+      else
+      {
+        result = createInstance(1 << shift);
+        metrics_.acquired.increment();
+      }
+    }
+    
+    metrics_.recordAcquire();
+    return result;
+  }
+  
+  
+  /**
+   * Releases the specified array back to the pool. The array shouldn't be
+   *  used once it is released. Arrays longer than the largest size class are
+   *  discarded.
+   * @param array The array to release
+   * @throws NullPointerException If the array is <code>null</code>
+   * @throws IllegalArgumentException If the array can't have been acquired
+   *  from this pool
+   */
+  public void release(A array)
+  {
+    if (array == null)
+      throw new NullPointerException("Can't release a null array!");
+    
+    int length = Array.getLength(array);
+    int shift  = shiftOf(length);
+    
+    if (shift > maxShift_)
+    {
+      metrics_.discarded.increment();
+    }
+    else
+    {
+      if (length != 1 << shift || shift < minShift_)
+        throw new IllegalArgumentException("The array doesn't belong to this pool!");
+      
+      classes_[shift - minShift_].offer(array);
+      metrics_.idle.increment();
+    }
+    
+    metrics_.stored.increment();
+  }
+  
+  
+  /**
+   * Returns the balance of this pool, which is the amount of acquired arrays
+   *  minus the amount of released arrays.
+   * @return The balance of this pool
+   */
+  public int getBalance()
+  {
+    return (int) metrics_.balance();
+  }
+  
+  
+  /**
+   * Returns a snapshot of the counters of this pool, see {@link Pool#getStatistics()}.
+   * @return A snapshot of the counters of this pool
+   */
+  public PoolStatistics getStatistics()
+  {
+    return metrics_.snapshot();
+  }
+  
+  
+  private A createInstance(int length)
+  {
+    long start = System.nanoTime();
+    A result = factory_.apply(length);
+    metrics_.recordCreation(System.nanoTime() - start);
+    
+    return result;
+  }
+  
+  
+  private static int shiftOf(int length)
+  {
+    return length <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+  }
+}
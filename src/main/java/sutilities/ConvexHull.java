@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An algorithm for computing convex hulls. All the algorithms return the same
+ *  hull in the same order: the indices of the hull points, starting with the
+ *  point with the lowest x coordinate and proceeding in clockwise order when
+ *  the y axis points up. Points on the edges of the hull are excluded, as are
+ *  duplicates.
+ * </br>
+ * </br>The algorithm to use depends on the input:
+ * <ul>
+ * <li>{@link #QUICK_HULL} is the fastest when only a small part of the points
+ *  are on the hull, which is the common case.</li>
+ * <li>{@link #MONOTONE_CHAIN} is O(n log n) for all inputs, use it when many
+ *  of the points may be on the hull.</li>
+ * <li>{@link #ADAPTIVE} chooses between the two above for every input.</li>
+ * </ul>
+ * @author Sebastian Hjelm
+ */
+@FunctionalInterface
+public interface ConvexHull
+{
+  /**
+   * The QuickHull algorithm, see {@link QuickHull}.
+   */
+  ConvexHull QUICK_HULL = QuickHull::computeIndices;
+  
+  /**
+   * Andrew's monotone chain algorithm, see {@link MonotoneChain}.
+   */
+  ConvexHull MONOTONE_CHAIN = MonotoneChain::computeIndices;
+  
+  /**
+   * Uses QuickHull when most of the points can be discarded early and the
+   *  monotone chain algorithm otherwise.
+   */
+  ConvexHull ADAPTIVE = AdaptiveHull::computeIndices;
+  
+  
+  /**
+   * Computes the convex hull of the specified points. The indices of the hull
+   *  points are put in the hull array of the workspace ({@link HullWorkspace#getHull()}).
+   * @param points The points
+   * @param workspace The workspace to use
+   * @return The amount of hull points
+   */
+  int computeIndices(PointBuffer points, HullWorkspace workspace);
+  
+  
+  /**
+   * Computes the convex hull of the specified points and returns the indices
+   *  of the hull points. This method allocates a new workspace.
+   * @param points The points
+   * @return The indices of the hull points
+   */
+  default int[] computeIndices(PointBuffer points)
+  {
+    HullWorkspace workspace = new HullWorkspace(points.size());
+    int size = computeIndices(points, workspace);
+    
+    return Arrays.copyOf(workspace.getHull(), size);
+  }
+  
+  
+  /**
+   * Computes the convex hull of the specified points and returns the hull
+   *  points.
+   * @param points The points
+   * @return The hull points
+   */
+  default List<Point> compute(Point[] points)
+  {
+    HullWorkspace workspace = new HullWorkspace(points.length);
+    int size = computeIndices(PointBuffer.of(points), workspace);
+    
+    int[] hull = workspace.getHull();
+    List<Point> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++)
+      result.add(points[hull[i]]);
+    
+    return result;
+  }
+}
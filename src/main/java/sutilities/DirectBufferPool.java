@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A pool of direct byte buffers, divided into size classes. Every size class
+ *  is a power of two, and a buffer acquired from the pool has the capacity of
+ *  the smallest size class that can hold the requested amount of bytes.
+ * </br>
+ * </br>Buffers aren't allocated one at a time. When a size class runs out a
+ *  large direct region is allocated and sliced into buffers of that class, so
+ *  the amount of direct allocations (and of cleaners that must run when the
+ *  memory is freed) is a fraction of the amount of buffers. Size classes larger
+ *  than the region size get one region per buffer. Requests larger than the
+ *  largest size class aren't pooled at all.
+ * </br>
+ * </br>Released buffers are kept by the pool indefinitely. Note that the
+ *  memory of a region is only freed once all buffers sliced from it have been
+ *  garbage collected.
+ * </br>
+ * </br>This class is thread safe.
+ * @author Sebastian Hjelm
+ * @see Pool
+ */
+public class DirectBufferPool
+{
+  private int minShift_;
+  private int maxShift_;
+  private int regionSize_;
+  
+  private PoolStorage<ByteBuffer>[] classes_;
+  
+  private PoolMetrics metrics_;
+  
+  
+  /**
+   * Creates a new pool of direct buffers with size classes from 64 bytes to
+   *  1 MiB, sliced from regions of 1 MiB.
+   */
+  public DirectBufferPool()
+  {
+    this(64, 1 << 20, 1 << 20);
+  }
+  
+  /**
+   * Creates a new pool of direct buffers. All sizes are rounded up to the
+   *  nearest power of two.
+   * @param minCapacity The capacity of the smallest size class
+   * @param maxCapacity The capacity of the largest size class, larger requests
+   *  aren't pooled
+   * @param regionSize The size of the regions that buffers are sliced from
+   * @throws IllegalArgumentException If any size is zero or less or larger
+   *  than 2^30, or if the minimum capacity exceeds the maximum capacity
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public DirectBufferPool(int minCapacity, int maxCapacity, int regionSize)
+  {
+    if (minCapacity <= 0 || maxCapacity <= 0 || regionSize <= 0)
+      throw new IllegalArgumentException("The sizes must be positive!");
+    if (minCapacity > maxCapacity)
+      throw new IllegalArgumentException("The minimum capacity can't exceed the maximum capacity!");
+    if (maxCapacity > 1 << 30 || regionSize > 1 << 30)
+      throw new IllegalArgumentException("The sizes can't exceed 2^30 bytes!");
+    
+    minShift_   = shiftOf(minCapacity);
+    maxShift_   = shiftOf(maxCapacity);
+    regionSize_ = 1 << shiftOf(regionSize);
+    
+    classes_ = new PoolStorage[maxShift_ - minShift_ + 1];
+    for (int i = 0; i < classes_.length; i++)
+      classes_[i] = new LockFreePoolStorage<ByteBuffer>();
+    
+    metrics_ = new PoolMetrics();
+  }
+  
+  
+  /**
+   * Acquires a direct buffer that can hold at least the specified amount of
+   *  bytes. The position of the buffer is zero and its limit is the requested
+   *  capacity, the capacity of the buffer may be larger. The byte order is
+   *  {@link ByteOrder#BIG_ENDIAN} and the content of the buffer is undefined.
+   * @param minCapacity The amount of bytes the buffer must be able to hold
+   * @return A direct buffer
+   * @throws IllegalArgumentException If the capacity is negative
+   */
+  public ByteBuffer acquire(int minCapacity)
+  {
+    if (minCapacity < 0)
+      throw new IllegalArgumentException("The capacity can't be negative!");
+    
+    int shift = Math.max(minShift_, shiftOf(minCapacity));
+    
+    ByteBuffer result = null;
+    if (shift > maxShift_)
+    {
+      result = allocate(minCapacity);
+      metrics_.acquired.increment();
+    }
+    else
+    {
+      PoolStorage<ByteBuffer> storage = classes_[shift - minShift_];
+      
+      result = storage.poll();
+      if (result != null)
+      {
+        metrics_.idle.decrement();
+        metrics_.hits.increment();
+        metrics_.acquired.increment();
+      }
+      else
+      {
+        result = carve(shift, storage);
+        metrics_.acquired.increment();
+      }
+    }
+    
+    metrics_.recordAcquire();
+    
+    result.limit(minCapacity);
+    return result;
+  }
+  
+  
+  /**
+   * Releases the specified buffer back to the pool. The buffer must have been
+   *  acquired from this pool, and it shouldn't be used once it is released.
+   * @param buffer The buffer to release
+   * @throws NullPointerException If the buffer is <code>null</code>
+   * @throws IllegalArgumentException If the buffer can't have been acquired
+   *  from this pool
+   */
+  public void release(ByteBuffer buffer)
+  {
+    if (buffer == null)
+      throw new NullPointerException("Can't release a null buffer!");
+    
+    int capacity = buffer.capacity();
+    int shift    = shiftOf(capacity);
+    
+    if (!buffer.isDirect() || (shift <= maxShift_ && (capacity != 1 << shift || shift < minShift_)))
+      throw new IllegalArgumentException("The buffer doesn't belong to this pool!");
+    
+    if (shift > maxShift_)
+    {
+      metrics_.discarded.increment();
+    }
+    else
+    {
+      buffer.clear();
+      buffer.order(ByteOrder.BIG_ENDIAN);
+      
+      classes_[shift - minShift_].offer(buffer);
+      metrics_.idle.increment();
+    }
+    
+    metrics_.stored.increment();
+  }
+  
+  
+  /**
+   * Returns the balance of this pool, which is the amount of acquired buffers
+   *  minus the amount of released buffers.
+   * @return The balance of this pool
+   */
+  public int getBalance()
+  {
+    return (int) metrics_.balance();
+  }
+  
+  
+  /**
+   * Returns a snapshot of the counters of this pool, see {@link Pool#getStatistics()}.
+   *  Buffers count as elements, and the creation counters refer to direct
+   *  allocations (regions and unpooled buffers).
+   * @return A snapshot of the counters of this pool
+   */
+  public PoolStatistics getStatistics()
+  {
+    return metrics_.snapshot();
+  }
+  
+  
+  private ByteBuffer carve(int shift, PoolStorage<ByteBuffer> storage)
+  {
+    int capacity = 1 << shift;
+    if (capacity >= regionSize_)
+      return allocate(capacity);
+    
+    ByteBuffer region = allocate(regionSize_);
+    
+    int count = regionSize_ / capacity;
+    ByteBuffer[] slices = new ByteBuffer[count];
+    for (int i = 0; i < count; i++)
+    {
+      region.limit((i + 1) * capacity);
+      region.position(i * capacity);
+      
+      slices[i] = region.slice();
+    }
+    
+    storage.offer(slices, 1, count - 1);
+    metrics_.idle.add(count - 1);
+    
+    return slices[0];
+  }
+  
+  
+  private ByteBuffer allocate(int capacity)
+  {
+    long start = System.nanoTime();
+    ByteBuffer result = ByteBuffer.allocateDirect(capacity);
+    metrics_.recordCreation(System.nanoTime() - start);
+    
+    return result;
+  }
+  
+  
+  private static int shiftOf(int capacity)
+  {
+    return capacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+  }
+}
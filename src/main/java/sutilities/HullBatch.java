@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the convex hulls of many small point sets at once, for example one
+ *  hull per sprite or polygon. All the sets are stored in one
+ *  {@link PointBuffer}, and an offset array tells where each set starts: set
+ *  i consists of the points from {@code offsets[i]} (inclusive) to
+ *  {@code offsets[i + 1]} (exclusive). The hulls are returned the same way,
+ *  as one array of point indices and an array of offsets into it.
+ * </br>
+ * </br>A batch keeps its result arrays and workspace between computations, so
+ *  once they are large enough computing a batch allocates nothing (except for
+ *  the tasks of a parallel computation). Each hull is computed with
+ *  {@link QuickHull#computeIndices(PointBuffer, HullWorkspace)} and is
+ *  returned in the same order.
+ * </br>
+ * </br>Example:
+ * <pre>
+ * HullBatch batch = new HullBatch();
+ * int sets = ...;
+ * batch.compute(points, offsets, sets);
+ *
+ * int[] hulls = batch.getHulls();
+ * int[] hullOffsets = batch.getHullOffsets();
+ * for (int i = 0; i &lt; sets; i++)
+ * {
+ *   for (int j = hullOffsets[i]; j &lt; hullOffsets[i + 1]; j++)
+ *     draw(points.getX(hulls[j]), points.getY(hulls[j]));
+ * }
+ * </pre>
+ * A batch may only be used by one thread at a time.
+ * @author Sebastian Hjelm
+ */
+public final class HullBatch
+{
+  /**
+   * Parallel computations split the sets in tasks of at least this many points.
+   */
+  private static final int TASK_SIZE = 1 << 13;
+  
+  private static final ThreadLocal<HullWorkspace> WORKSPACES = ThreadLocal.withInitial(HullWorkspace::new);
+  
+  private final HullWorkspace workspace_;
+  private int[] hulls_;
+  private int[] hullOffsets_;
+  
+  
+  /**
+   * Creates a new batch.
+   */
+  public HullBatch()
+  {
+    workspace_ = new HullWorkspace();
+    hulls_ = new int[64];
+    hullOffsets_ = new int[16];
+  }
+  
+  
+  /**
+   * Computes the convex hulls of the specified point sets on the calling
+   *  thread.
+   * @param points The points of all sets
+   * @param offsets The offsets of the sets in the points, with
+   *  {@code sets + 1} elements
+   * @param sets The amount of sets
+   * @return The total amount of hull points
+   * @throws IllegalArgumentException If the offsets are decreasing or outside
+   *  of the points
+   */
+  public int compute(PointBuffer points, int[] offsets, int sets)
+  {
+    prepare(points, offsets, sets);
+    
+    float[] xs = points.getXs();
+    float[] ys = points.getYs();
+    
+    int size = 0;
+    for (int i = 0; i < sets; i++)
+    {
+      int hullSize = QuickHull.computeIndices(xs, ys, offsets[i], offsets[i + 1] - offsets[i], workspace_);
+      System.arraycopy(workspace_.hull, 0, hulls_, size, hullSize);
+      
+      hullOffsets_[i] = size;
+      size += hullSize;
+    }
+    hullOffsets_[sets] = size;
+    
+    return size;
+  }
+  
+  
+  /**
+   * Computes the convex hulls of the specified point sets in the common
+   *  fork/join pool, see {@link #compute(PointBuffer, int[], int)}.
+   * @param points The points of all sets
+   * @param offsets The offsets of the sets in the points, with
+   *  {@code sets + 1} elements
+   * @param sets The amount of sets
+   * @return The total amount of hull points
+   * @throws IllegalArgumentException If the offsets are decreasing or outside
+   *  of the points
+   */
+  public int computeParallel(PointBuffer points, int[] offsets, int sets)
+  {
+    return computeParallel(points, offsets, sets, ForkJoinPool.commonPool());
+  }
+  
+  
+  /**
+   * Computes the convex hulls of the specified point sets in the specified
+   *  fork/join pool, see {@link #compute(PointBuffer, int[], int)}. Each
+   *  worker thread uses its own workspace, and writes the hulls at the offsets
+   *  of their point sets, after which the hulls are moved together.
+   * @param points The points of all sets
+   * @param offsets The offsets of the sets in the points, with
+   *  {@code sets + 1} elements
+   * @param sets The amount of sets
+   * @param pool The pool to run the computation in
+   * @return The total amount of hull points
+   * @throws IllegalArgumentException If the offsets are decreasing or outside
+   *  of the points
+   */
+  public int computeParallel(PointBuffer points, int[] offsets, int sets, ForkJoinPool pool)
+  {
+    prepare(points, offsets, sets);
+    
+    pool.invoke(new BatchTask(points.getXs(), points.getYs(), offsets, 0, sets, hulls_, hullOffsets_));
+    
+    // The hulls are at the offsets of their sets, and are never longer than
+    //  the sets, so moving them down in order never overwrites a later hull
+    int size = 0;
+    for (int i = 0; i < sets; i++)
+    {
+      int hullSize = hullOffsets_[i];
+      System.arraycopy(hulls_, offsets[i], hulls_, size, hullSize);
+      
+      hullOffsets_[i] = size;
+      size += hullSize;
+    }
+    hullOffsets_[sets] = size;
+    
+    return size;
+  }
+  
+  
+  /**
+   * Returns the point indices of the hulls of the last computation. Only as
+   *  many elements as the computation returned are valid, the array may be
+   *  longer. The array is reused by the next computation.
+   * @return The hull indices
+   */
+  public int[] getHulls()
+  {
+    return hulls_;
+  }
+  
+  
+  /**
+   * Returns the offsets of the hulls of the last computation in the array of
+   *  {@link #getHulls()}, the hull of set i is found from
+   *  {@code offsets[i]} (inclusive) to {@code offsets[i + 1]} (exclusive).
+   *  The array is reused by the next computation.
+   * @return The hull offsets
+   */
+  public int[] getHullOffsets()
+  {
+    return hullOffsets_;
+  }
+  
+  
+  private void prepare(PointBuffer points, int[] offsets, int sets)
+  {
+    if (offsets.length <= sets)
+      throw new IllegalArgumentException("The offsets must contain " + (sets + 1) + " elements: " + offsets.length);
+    
+    int largest = 0;
+    for (int i = 0; i < sets; i++)
+    {
+      int count = offsets[i + 1] - offsets[i];
+      if (offsets[i] < 0 || count < 0 || offsets[i + 1] > points.size())
+        throw new IllegalArgumentException("Invalid point set " + i + ": " + offsets[i] + " to " + offsets[i + 1]);
+      
+      largest = Math.max(largest, count);
+    }
+    
+    workspace_.ensureCapacity(largest);
+    if (hulls_.length < points.size())
+      hulls_ = new int[points.size()];
+    if (hullOffsets_.length <= sets)
+      hullOffsets_ = new int[sets + 1];
+  }
+  
+  
+  
+  /**
+   * Computes the hulls of a range of sets, or splits it in two tasks. Each
+   *  hull is written at the offset of its set, and its size is stored at the
+   *  position of the set in the hull offsets.
+   */
+  @SuppressWarnings("serial")
+  private static class BatchTask extends RecursiveAction
+  {
+    private final float[] xs;
+    private final float[] ys;
+    private final int[] offsets;
+    private final int from;
+    private final int to;
+    private final int[] hulls;
+    private final int[] hullSizes;
+    
+    public BatchTask(float[] xs, float[] ys, int[] offsets, int from, int to, int[] hulls, int[] hullSizes)
+    {
+      this.xs = xs;
+      this.ys = ys;
+      this.offsets = offsets;
+      this.from = from;
+      this.to = to;
+      this.hulls = hulls;
+      this.hullSizes = hullSizes;
+    }
+    
+    @Override
+    protected void compute()
+    {
+      if (to - from > 1 && offsets[to] - offsets[from] > TASK_SIZE)
+      {
+        int mid = (from + to) >>> 1;
+        invokeAll(new BatchTask(xs, ys, offsets, from, mid, hulls, hullSizes),
+                  new BatchTask(xs, ys, offsets, mid, to, hulls, hullSizes));
+        return;
+      }
+      
+      HullWorkspace workspace = WORKSPACES.get();
+      for (int i = from; i < to; i++)
+      {
+        int size = QuickHull.computeIndices(xs, ys, offsets[i], offsets[i + 1] - offsets[i], workspace);
+        System.arraycopy(workspace.hull, 0, hulls, offsets[i], size);
+        hullSizes[i] = size;
+      }
+    }
+  }
+}
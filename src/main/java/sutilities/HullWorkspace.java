@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.Arrays;
+
+/**
+ * The scratch memory used when computing convex hulls over a {@link PointBuffer}.
+ *  A workspace grows to fit the largest input it has been used with, and can
+ *  then be reused for any amount of hull computations without allocating.
+ * </br>
+ * </br>The result of the last computation is available through {@link #getHull()}.
+ * </br>
+ * </br>A workspace may only be used by one thread at a time.
+ * @author Sebastian Hjelm
+ * @see QuickHull#computeIndices(PointBuffer, HullWorkspace)
+ */
+public final class HullWorkspace
+{
+  int[] candidates;
+  int[] hull;
+  int[] stack;
+  
+  
+  /**
+   * Creates a new workspace.
+   */
+  public HullWorkspace()
+  {
+    this(64);
+  }
+  
+  /**
+   * Creates a new workspace with room for hulls of the specified amount of
+   *  points.
+   * @param capacity The initial capacity
+   */
+  public HullWorkspace(int capacity)
+  {
+    capacity = Math.max(4, capacity);
+    
+    candidates = new int[capacity];
+    hull       = new int[capacity];
+    stack      = new int[64];
+  }
+  
+  
+  /**
+   * Returns the indices of the points of the last computed hull. Only as many
+   *  elements as the computation returned are valid, the array may be longer.
+   *  The array is reused by the next computation.
+   * @return The indices of the hull points
+   */
+  public int[] getHull()
+  {
+    return hull;
+  }
+  
+  
+  /**
+   * Makes sure there is room for hulls of the specified amount of points.
+   * @param capacity The amount of points
+   */
+  void ensureCapacity(int capacity)
+  {
+    if (capacity > candidates.length)
+    {
+      int newCapacity = Math.max(capacity, candidates.length + (candidates.length >> 1));
+      
+      candidates = new int[newCapacity];
+      hull       = new int[newCapacity];
+    }
+  }
+  
+  
+  /**
+   * Makes sure the stack has room for the specified amount of elements,
+   *  keeping its content.
+   * @param capacity The amount of elements
+   */
+  void ensureStackCapacity(int capacity)
+  {
+    if (capacity > stack.length)
+      stack = Arrays.copyOf(stack, Math.max(capacity, stack.length * 2));
+  }
+}
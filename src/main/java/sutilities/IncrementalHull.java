@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * A convex hull that points can be added to one at a time, for streams of
+ *  points where recomputing the hull of all points seen so far would be too
+ *  slow. The upper and lower halves of the hull are kept as two chains sorted
+ *  by x, which makes adding a point O(log h) amortised, where h is the size of
+ *  the hull. Points inside the hull are rejected after one lookup in each
+ *  chain, and are not stored.
+ * </br>
+ * </br>The hull is returned in the same order as by {@link QuickHull}: starting
+ *  with the point with the lowest x coordinate and proceeding in clockwise
+ *  order when the y axis points up. Points on the edges of the hull are
+ *  excluded.
+ * </br>
+ * </br>This class is not thread safe.
+ * @author Sebastian Hjelm
+ */
+public class IncrementalHull
+{
+  private final Chain upper_;
+  private final Chain lower_;
+  
+  
+  /**
+   * Creates a new empty hull.
+   */
+  public IncrementalHull()
+  {
+    upper_ = new Chain(1);
+    lower_ = new Chain(-1);
+  }
+  
+  
+  /**
+   * Adds the specified point to the hull.
+   * @param point The point to add
+   * @return True if the hull changed, false if the point was inside it
+   */
+  public boolean add(Point point)
+  {
+    return add(point.x, point.y);
+  }
+  
+  
+  /**
+   * Adds the specified point to the hull.
+   * @param x The x coordinate
+   * @param y The y coordinate
+   * @return True if the hull changed, false if the point was inside it
+   */
+  public boolean add(float x, float y)
+  {
+    return add(x, y, null);
+  }
+  
+  
+  /**
+   * Adds the specified point to the hull, and records how to undo the
+   *  addition in the specified log.
+   * @param x The x coordinate
+   * @param y The y coordinate
+   * @param log The log to record the addition in, or <code>null</code>
+   * @return True if the hull changed, false if the point was inside it
+   * @see #undo(UndoLog)
+   */
+  boolean add(float x, float y, UndoLog log)
+  {
+    // Avoid -0 and 0 being separate keys
+    x += 0.0f;
+    
+    boolean changed = upper_.add(x, y, log);
+    changed |= lower_.add(x, y, log);
+    
+    return changed;
+  }
+  
+  
+  /**
+   * Undoes the latest addition recorded in the specified log, which restores
+   *  the hull to what it was before that addition. Only the additions made
+   *  since the hull was last changed without the log can be undone.
+   * @param log The log of the additions
+   */
+  void undo(UndoLog log)
+  {
+    lower_.undo(log);
+    upper_.undo(log);
+  }
+  
+  
+  /**
+   * Checks whether or not the specified point is inside or on the edge of the
+   *  hull.
+   * @param point The point
+   * @return True if the point is inside the hull
+   */
+  public boolean contains(Point point)
+  {
+    return contains(point.x, point.y);
+  }
+  
+  
+  /**
+   * Checks whether or not the specified point is inside or on the edge of the
+   *  hull.
+   * @param x The x coordinate
+   * @param y The y coordinate
+   * @return True if the point is inside the hull
+   */
+  public boolean contains(float x, float y)
+  {
+    x += 0.0f;
+    return upper_.isBelow(x, y) && lower_.isBelow(x, y);
+  }
+  
+  
+  /**
+   * Returns true if no points have been added to the hull.
+   * @return True if the hull is empty
+   */
+  public boolean isEmpty()
+  {
+    return upper_.points.isEmpty();
+  }
+  
+  
+  /**
+   * Returns the amount of points in the hull.
+   * @return The size of the hull
+   */
+  public int size()
+  {
+    if (isEmpty())
+      return 0;
+    
+    // The chains share their end points unless there is a vertical edge there
+    int size = upper_.points.size() + lower_.points.size();
+    if (upper_.points.firstEntry().getValue() == lower_.getFirstY())
+      size--;
+    if (upper_.points.lastEntry().getValue() == lower_.getLastY())
+      size--;
+    
+    return Math.max(1, size);
+  }
+  
+  
+  /**
+   * Returns the points of the hull, starting with the point with the lowest x
+   *  coordinate (and lowest y coordinate of those) and proceeding in clockwise
+   *  order when the y axis points up.
+   * @return The hull points
+   */
+  public List<Point> getHull()
+  {
+    List<Point> hull = new ArrayList<>(size());
+    if (isEmpty())
+      return hull;
+    
+    Point first = new Point(lower_.points.firstKey(), lower_.getFirstY());
+    hull.add(first);
+    
+    Point last = first;
+    for (Entry<Float, Float> e : upper_.points.entrySet())
+    {
+      if (e.getKey() != last.x || e.getValue() != last.y)
+      {
+        last = new Point(e.getKey(), e.getValue());
+        hull.add(last);
+      }
+    }
+    
+    for (Entry<Float, Float> e : lower_.points.descendingMap().entrySet())
+    {
+      float x = e.getKey();
+      float y = lower_.sign * e.getValue();
+      if ((x != last.x || y != last.y) && (x != first.x || y != first.y))
+      {
+        last = new Point(x, y);
+        hull.add(last);
+      }
+    }
+    
+    return hull;
+  }
+  
+  
+  /**
+   * Removes all points from the hull.
+   */
+  public void clear()
+  {
+    upper_.points.clear();
+    lower_.points.clear();
+  }
+  
+  
+  
+  /**
+   * A stack of the changes made by additions to a hull, so they can be undone
+   *  in reverse order. For each chain an addition records the points it
+   *  removed from the chain (including the point it replaced at the same x, if
+   *  any), followed by the x coordinate of the added point and the amount of
+   *  removed points, or only -1 if the point wasn't added to the chain. Every
+   *  point is removed at most once while it is in a chain, so the log is never
+   *  larger than the amount of points added.
+   */
+  static class UndoLog
+  {
+    private float[] values_ = new float[64];
+    private int valueCount_;
+    private int[] counts_ = new int[16];
+    private int countCount_;
+    
+    /**
+     * Removes all changes from the log.
+     */
+    public void clear()
+    {
+      valueCount_ = 0;
+      countCount_ = 0;
+    }
+    
+    void pushValue(float value)
+    {
+      if (valueCount_ == values_.length)
+        values_ = Arrays.copyOf(values_, valueCount_ * 2);
+      values_[valueCount_++] = value;
+    }
+    
+    float popValue()
+    {
+      return values_[--valueCount_];
+    }
+    
+    void pushCount(int count)
+    {
+      if (countCount_ == counts_.length)
+        counts_ = Arrays.copyOf(counts_, countCount_ * 2);
+      counts_[countCount_++] = count;
+    }
+    
+    int popCount()
+    {
+      return counts_[--countCount_];
+    }
+  }
+  
+  
+  
+  /**
+   * One half of the hull, as a map from x to y coordinates. The lower half
+   *  stores its y coordinates negated, so both halves can be treated as upper
+   *  halves.
+   */
+  private static class Chain
+  {
+    final TreeMap<Float, Float> points = new TreeMap<>();
+    final float sign;
+    
+    public Chain(float sign)
+    {
+      this.sign = sign;
+    }
+    
+    float getFirstY()
+    {
+      return sign * points.firstEntry().getValue();
+    }
+    
+    float getLastY()
+    {
+      return sign * points.lastEntry().getValue();
+    }
+    
+    boolean isBelow(float x, float y)
+    {
+      y *= sign;
+      
+      Entry<Float, Float> floor = points.floorEntry(x);
+      Entry<Float, Float> ceiling = points.ceilingEntry(x);
+      if (floor == null || ceiling == null)
+        return false;
+      if (floor.getKey() == x)
+        return y <= floor.getValue();
+      
+      return cross(floor.getKey(), floor.getValue(), ceiling.getKey(), ceiling.getValue(), x, y) <= 0;
+    }
+    
+    boolean add(float x, float y, UndoLog log)
+    {
+      if (isBelow(x, y))
+      {
+        if (log != null)
+          log.pushCount(-1);
+        return false;
+      }
+      
+      y *= sign;
+      Float replaced = points.put(x, y);
+      
+      int removed = 0;
+      if (log != null && replaced != null)
+      {
+        log.pushValue(x);
+        log.pushValue(replaced);
+        removed++;
+      }
+      
+      // Remove the neighbours that are no longer above the chain
+      Entry<Float, Float> next = points.higherEntry(x);
+      while (next != null)
+      {
+        Entry<Float, Float> after = points.higherEntry(next.getKey());
+        if (after == null || cross(x, y, after.getKey(), after.getValue(), next.getKey(), next.getValue()) > 0)
+          break;
+        
+        points.remove(next.getKey());
+        if (log != null)
+        {
+          log.pushValue(next.getKey());
+          log.pushValue(next.getValue());
+          removed++;
+        }
+        next = after;
+      }
+      
+      Entry<Float, Float> previous = points.lowerEntry(x);
+      while (previous != null)
+      {
+        Entry<Float, Float> before = points.lowerEntry(previous.getKey());
+        if (before == null || cross(before.getKey(), before.getValue(), x, y, previous.getKey(), previous.getValue()) > 0)
+          break;
+        
+        points.remove(previous.getKey());
+        if (log != null)
+        {
+          log.pushValue(previous.getKey());
+          log.pushValue(previous.getValue());
+          removed++;
+        }
+        previous = before;
+      }
+      
+      if (log != null)
+      {
+        log.pushValue(x);
+        log.pushCount(removed);
+      }
+      
+      return true;
+    }
+    
+    void undo(UndoLog log)
+    {
+      int removed = log.popCount();
+      if (removed < 0)
+        return;
+      
+      // The added point is removed first since it may have replaced a point
+      //  with the same x
+      points.remove(log.popValue());
+      for (int i = 0; i < removed; i++)
+      {
+        float y = log.popValue();
+        points.put(log.popValue(), y);
+      }
+    }
+    
+    /**
+     * Returns a positive value if M is to the left of the line from A to B.
+     */
+    private static double cross(double ax, double ay, double bx, double by, double mx, double my)
+    {
+      return (bx - ax) * (my - ay) - (by - ay) * (mx - ax);
+    }
+  }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * An object pool where the elements are grouped by a key, for example buffers
+ *  grouped by their format. Elements are only ever acquired from the group of
+ *  the key they were stored with, and new elements are created for a specific
+ *  key by the factory of the pool.
+ * </br>
+ * </br>Every key has its own list of idle elements, guarded according to the
+ *  {@link Pool.Mode} of the pool, so threads that use different keys never
+ *  contend with each other. Looking up the list of a key doesn't block either.
+ *  The total amount of idle elements across all keys can be limited with
+ *  {@link #setMaxIdle(int)}, in which case keys with many idle elements give
+ *  way to the other keys when the pool is full.
+ * </br>
+ * </br>The groups are kept for as long as the pool exists, so the amount of
+ *  distinct keys should be limited.
+ * @author Sebastian Hjelm
+ *
+ * @param <K> The type of keys, must be usable as hash map keys
+ * @param <E> Which type of objects this pool should contain, must be {@code Poolable}
+ * @see Pool
+ */
+public class KeyedPool<K, E extends Poolable>
+{
+  private Pool.Mode mode_;
+  private Function<? super K, ? extends E> factory_;
+  
+  private ConcurrentHashMap<K, KeyedEntry<E>> entries_;
+  private Function<K, KeyedEntry<E>> entryFactory_;
+  
+  private PoolMetrics metrics_;
+  
+  private volatile int maxIdle_;
+  
+  
+  /**
+   * Creates a new empty keyed pool that uses the specified factory to create
+   *  new instances for a given key. The pool is created in the
+   *  {@link Pool.Mode#SYNCHRONIZED} mode.
+   * @param factory The factory that creates new instances for a key
+   * @throws NullPointerException If the factory is <code>null</code>
+   */
+  public KeyedPool(Function<? super K, ? extends E> factory)
+  {
+    this(Pool.Mode.SYNCHRONIZED, factory);
+  }
+  
+  /**
+   * Creates a new empty keyed pool that uses the specified mode and factory,
+   *  see {@link #KeyedPool(Function)} for details.
+   * @param mode How the idle elements of each key should be guarded
+   * @param factory The factory that creates new instances for a key
+   * @throws NullPointerException If the mode or factory is <code>null</code>
+   */
+  public KeyedPool(Pool.Mode mode, Function<? super K, ? extends E> factory)
+  {
+    if (mode == null)
+      throw new NullPointerException("The mode can't be null!");
+    if (factory == null)
+      throw new NullPointerException("The factory can't be null!");
+    
+    mode_    = mode;
+    factory_ = factory;
+    
+    entries_      = new ConcurrentHashMap<K, KeyedEntry<E>>();
+    entryFactory_ = key -> new KeyedEntry<E>(Pool.<E>createStorage(mode_));
+    
+    metrics_ = new PoolMetrics();
+  }
+  
+  
+  /**
+   * Returns the mode this pool was created with.
+   * @return The mode of this pool
+   */
+  public Pool.Mode getMode()
+  {
+    return mode_;
+  }
+  
+  
+  /**
+   * Sets the maximum total amount of idle elements this pool may hold, across
+   *  all keys. When an element is stored while the pool is full, an idle
+   *  element of the key that holds the most idle elements is discarded to make
+   *  room for it, so a burst of one key doesn't prevent the other keys from
+   *  being pooled. If the key of the element already holds the most idle
+   *  elements the stored element is discarded instead. A value of zero or less
+   *  means that the pool is unbounded, which is the default.
+   * </br>
+   * </br>The limit is approximate, threads that store elements at the same
+   *  time may exceed it slightly. In the {@link Pool.Mode#THREAD_CACHED} mode
+   *  the elements cached by other threads aren't counted, as for
+   *  {@link Pool#setMaxIdle(int)}.
+   * @param maxIdle The maximum total amount of idle elements
+   */
+  public void setMaxIdle(int maxIdle)
+  {
+    maxIdle_ = Math.max(0, maxIdle);
+  }
+  
+  
+  /**
+   * Returns the maximum total amount of idle elements this pool may hold.
+   * @return The maximum amount of idle elements, or zero if the pool is unbounded
+   * @see #setMaxIdle(int)
+   */
+  public int getMaxIdle()
+  {
+    return maxIdle_;
+  }
+  
+  
+  /**
+   * Acquires and returns an instance for the specified key. If the pool has no
+   *  idle elements for the key a new instance is created and returned.
+   * @param key The key of the element
+   * @return An instance for the specified key
+   * @throws NullPointerException If the key is <code>null</code>
+   * @throws PoolException If a new instance were to be created and the
+   *  creation failed
+   */
+  public E acquire(K key)
+  {
+    KeyedEntry<E> entry = entryOf(key);
+    
+    E result = entry.storage.poll();
+    if (result != null)
+    {
+      entry.metrics.idle.decrement();
+      entry.metrics.hits.increment();
+      entry.metrics.acquired.increment();
+      
+      metrics_.idle.decrement();
+      metrics_.hits.increment();
+      metrics_.acquired.increment();
+    }
+    else
+    {
+      result = createInstance(key, entry);
+      
+      entry.metrics.acquired.increment();
+      metrics_.acquired.increment();
+    }
+    
+    entry.metrics.recordAcquire();
+    metrics_.recordAcquire();
+    
+    return result;
+  }
+  
+  
+  /**
+   * Stores the specified element in the pool, under the specified key. The
+   *  element shouldn't be referenced from the outside once it is in the pool.
+   *  If the pool is full the element is discarded instead.
+   * @param key The key of the element
+   * @param element The element to store in the pool
+   * @throws NullPointerException If the key or element is <code>null</code>
+   */
+  public void store(K key, E element)
+  {
+    if (element == null)
+      throw new NullPointerException("Can't store a null element!");
+    
+    KeyedEntry<E> entry = entryOf(key);
+    
+    int maxIdle = maxIdle_;
+    if (maxIdle <= 0 || metrics_.idle.sum() < maxIdle || makeRoom(entry, maxIdle))
+    {
+      entry.storage.offer(element);
+      
+      entry.metrics.idle.increment();
+      metrics_.idle.increment();
+    }
+    else
+    {
+      entry.metrics.discarded.increment();
+      metrics_.discarded.increment();
+    }
+    
+    entry.metrics.stored.increment();
+    metrics_.stored.increment();
+  }
+  
+  
+  /**
+   * Returns the total amount of idle elements in this pool.
+   * </br>
+   * </br>In the {@link Pool.Mode#THREAD_CACHED} mode only the elements the
+   *  calling thread can reach are included, which excludes the elements cached
+   *  by other threads, like {@link Pool#getIdleSize()}. The idle size in the
+   *  statistics (see {@link #getStatistics()}) includes them.
+   * @return The amount of idle elements
+   */
+  public int getIdleSize()
+  {
+    if (mode_ != Pool.Mode.THREAD_CACHED)
+      return metrics_.idle.intValue();
+    
+    long total = 0;
+    for (KeyedEntry<E> entry : entries_.values())
+      total += entry.reachableIdle();
+    
+    return (int) total;
+  }
+  
+  
+  /**
+   * Returns the total balance of this pool, which is the amount of acquired
+   *  elements minus the amount of stored elements across all keys.
+   * @return The balance of this pool
+   */
+  public int getBalance()
+  {
+    return (int) metrics_.balance();
+  }
+  
+  
+  /**
+   * Returns the balance of the specified key.
+   * @param key The key
+   * @return The balance of the key, zero if the key has never been used
+   */
+  public int getBalance(K key)
+  {
+    KeyedEntry<E> entry = entries_.get(key);
+    return entry == null ? 0 : (int) entry.metrics.balance();
+  }
+  
+  
+  /**
+   * Returns a snapshot of the counters of this pool for all keys combined,
+   *  see {@link Pool#getStatistics()}.
+   * @return A snapshot of the counters of this pool
+   */
+  public PoolStatistics getStatistics()
+  {
+    return metrics_.snapshot();
+  }
+  
+  
+  /**
+   * Returns a snapshot of the counters of the specified key, see
+   *  {@link Pool#getStatistics()}.
+   * @param key The key
+   * @return A snapshot of the counters of the key, all zero if the key has
+   *  never been used
+   */
+  public PoolStatistics getStatistics(K key)
+  {
+    KeyedEntry<E> entry = entries_.get(key);
+    return entry == null ? new PoolMetrics().snapshot() : entry.metrics.snapshot();
+  }
+  
+  
+  private KeyedEntry<E> entryOf(K key)
+  {
+    KeyedEntry<E> entry = entries_.get(key);
+    if (entry == null)
+      entry = entries_.computeIfAbsent(key, entryFactory_);
+    
+    return entry;
+  }
+  
+  
+  /**
+   * Makes room for an element of the specified entry in a full pool, by
+   *  discarding an idle element of the entry with the most idle elements. The
+   *  sizes are counted again without the elements other threads cache, which
+   *  can't be discarded. Only entries that hold at least two more elements
+   *  than the storing entry give way, so the keys settle at equal shares of
+   *  the pool instead of evicting each other.
+   * @return Whether there is room for the element
+   */
+  private boolean makeRoom(KeyedEntry<E> entry, int maxIdle)
+  {
+    long total = 0;
+    long largestIdle = 0;
+    KeyedEntry<E> largest = null;
+    for (KeyedEntry<E> other : entries_.values())
+    {
+      long idle = other.reachableIdle();
+      total += idle;
+      if (idle > largestIdle)
+      {
+        largestIdle = idle;
+        largest = other;
+      }
+    }
+    
+    if (total < maxIdle)
+      return true;
+    if (largest == null || largest == entry || largestIdle <= entry.reachableIdle() + 1)
+      return false;
+    
+    E evicted = largest.storage.poll();
+    if (evicted == null)
+      return false;
+    
+    largest.metrics.idle.decrement();
+    largest.metrics.discarded.increment();
+    
+    metrics_.idle.decrement();
+    metrics_.discarded.increment();
+    
+    return true;
+  }
+  
+  
+  private E createInstance(K key, KeyedEntry<E> entry)
+  {
+    long start = System.nanoTime();
+    E result = factory_.apply(key);
+    long time = System.nanoTime() - start;
+    
+    if (result == null)
+      throw new PoolException("The factory returned null!");
+    
+    entry.metrics.recordCreation(time);
+    metrics_.recordCreation(time);
+    
+    return result;
+  }
+  
+  
+  private static class KeyedEntry<E>
+  {
+    public final PoolStorage<E> storage;
+    public final PoolMetrics metrics;
+    
+    public KeyedEntry(PoolStorage<E> storage)
+    {
+      this.storage = storage;
+      this.metrics = new PoolMetrics();
+    }
+    
+    /**
+     * Returns the amount of idle elements the calling thread can poll.
+     */
+    public long reachableIdle()
+    {
+      if (storage instanceof ThreadCachedPoolStorage)
+        return ((ThreadCachedPoolStorage<E>) storage).reachableSize();
+      
+      return metrics.idle.sum();
+    }
+  }
+}
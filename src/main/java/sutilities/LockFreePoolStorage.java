@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link PoolStorage} implemented as a lock-free (Treiber) stack, where the
+ *  head of the stack is swapped using compare-and-set.
+ * </br>
+ * </br>Unlike {@link SynchronizedPoolStorage} the nodes are never reused, every
+ *  {@code offer()} pushes a fresh node. This is what protects the stack from
+ *  the ABA problem: a node can't reappear as the head while another thread
+ *  still holds a reference to it, since the garbage collector won't recycle
+ *  its memory until then.
+ * @author Sebastian Hjelm
+ *
+ * @param <E> The type of elements in the storage
+ */
+class LockFreePoolStorage<E> implements PoolStorage<E>
+{
+  private AtomicReference<PoolNode<E>> head_;
+  
+  
+  public LockFreePoolStorage()
+  {
+    head_ = new AtomicReference<PoolNode<E>>();
+  }
+  
+  
+  @Override
+  public E poll()
+  {
+    PoolNode<E> head = head_.get();
+    while (head != null)
+    {
+      if (head_.compareAndSet(head, head.next))
+        return head.element;
+      
+      head = head_.get();
+    }
+    
+    return null;
+  }
+  
+  
+  @Override
+  public void offer(E element)
+  {
+    PoolNode<E> node = new PoolNode<E>(element);
+    
+    PoolNode<E> head = head_.get();
+    node.next = head;
+    while (!head_.compareAndSet(head, node))
+    {
+      head = head_.get();
+      node.next = head;
+    }
+  }
+  
+  
+  @Override
+  public int poll(E[] destination, int offset, int amount)
+  {
+    if (amount <= 0)
+      return 0;
+    
+    while (true)
+    {
+      PoolNode<E> head = head_.get();
+      if (head == null)
+        return 0;
+      
+      // Nodes are never modified once pushed, so the chain below the head can
+      //  be walked safely, the CAS below verifies that nobody took it meanwhile
+      PoolNode<E> last = head;
+      int count = 1;
+      while (count < amount && last.next != null)
+      {
+        last = last.next;
+        count++;
+      }
+      
+      if (head_.compareAndSet(head, last.next))
+      {
+        PoolNode<E> node = head;
+        for (int i = 0; i < count; i++)
+        {
+          destination[offset + i] = node.element;
+          node = node.next;
+        }
+        
+        return count;
+      }
+    }
+  }
+  
+  
+  @Override
+  public void offer(E[] elements, int offset, int amount)
+  {
+    if (amount <= 0)
+      return;
+    
+    PoolNode<E> first = new PoolNode<E>(elements[offset]);
+    PoolNode<E> last  = first;
+    for (int i = offset + 1; i < offset + amount; i++)
+    {
+      PoolNode<E> node = new PoolNode<E>(elements[i]);
+      node.next = first;
+      first = node;
+    }
+    
+    PoolNode<E> head = head_.get();
+    last.next = head;
+    while (!head_.compareAndSet(head, first))
+    {
+      head = head_.get();
+      last.next = head;
+    }
+  }
+  
+  
+  private static class PoolNode<E>
+  {
+    public PoolNode<E> next;
+    
+    public final E element;
+    
+    public PoolNode(E element)
+    {
+      this.element = element;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.Arrays;
+
+/**
+ * Computes convex hulls with Andrew's monotone chain algorithm. The points are
+ *  sorted by x (and y) and the two halves of the hull are then built in one
+ *  linear pass each, which makes the running time O(n log n) regardless of how
+ *  the points are distributed. {@link QuickHull} is usually faster, but it
+ *  degrades towards O(n^2) when most of the points are on the hull.
+ * </br>
+ * </br>The hull is returned in the same order as by {@link QuickHull}. Like
+ *  QuickHull it first discards the points that are trivially inside the hull.
+ * @author Sebastian Hjelm
+ * @see ConvexHull#MONOTONE_CHAIN
+ */
+public final class MonotoneChain
+{
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+  
+  
+  private MonotoneChain()
+  {
+  }
+  
+  
+  /**
+   * Computes the convex hull of the specified points and returns the indices
+   *  of the hull points, see {@link #computeIndices(PointBuffer, HullWorkspace)}.
+   * @param points The points
+   * @return The indices of the hull points
+   */
+  public static int[] computeIndices(PointBuffer points)
+  {
+    HullWorkspace workspace = new HullWorkspace(points.size());
+    int size = computeIndices(points, workspace);
+    
+    return Arrays.copyOf(workspace.getHull(), size);
+  }
+  
+  
+  /**
+   * Computes the convex hull of the specified points, the result is the same
+   *  as for {@link QuickHull#computeIndices(PointBuffer, HullWorkspace)}.
+   * @param points The points
+   * @param workspace The workspace to use
+   * @return The amount of hull points
+   */
+  public static int computeIndices(PointBuffer points, HullWorkspace workspace)
+  {
+    return computeIndices(points.getXs(), points.getYs(), 0, points.size(), workspace);
+  }
+  
+  
+  static int computeIndices(float[] xs, float[] ys, int offset, int count, HullWorkspace workspace)
+  {
+    if (count <= 0)
+      return 0;
+    
+    workspace.ensureCapacity(count + 2);
+    
+    int n = QuickHull.prune(xs, ys, offset, count, workspace.candidates);
+    return computeCandidates(xs, ys, n, workspace);
+  }
+  
+  
+  /**
+   * Computes the convex hull of the first n candidates of the workspace, the
+   *  result is put in the hull array of the workspace. The hull array must
+   *  have room for n + 2 elements.
+   */
+  static int computeCandidates(float[] xs, float[] ys, int n, HullWorkspace workspace)
+  {
+    int[] points = workspace.candidates;
+    int[] hull   = workspace.hull;
+    
+    int[] sorted = sort(xs, ys, points, hull, n);
+    if (sorted != points)
+      System.arraycopy(sorted, 0, points, 0, n);
+    
+    int first = points[0];
+    int last  = points[n - 1];
+    if (xs[first] == xs[last] && ys[first] == ys[last])
+    {
+      hull[0] = first;
+      return 1;
+    }
+    
+    // The upper chain from left to right, then the lower chain back again
+    int size = 0;
+    for (int i = 0; i < n; i++)
+    {
+      int p = points[i];
+      while (size >= 2 && QuickHull.cross(xs, ys, hull[size - 2], hull[size - 1], p) >= 0)
+        size--;
+      hull[size++] = p;
+    }
+    
+    int upperSize = size + 1;
+    for (int i = n - 2; i >= 0; i--)
+    {
+      int p = points[i];
+      while (size >= upperSize && QuickHull.cross(xs, ys, hull[size - 2], hull[size - 1], p) >= 0)
+        size--;
+      hull[size++] = p;
+    }
+    
+    // The first point was added again at the end
+    return size - 1;
+  }
+  
+  
+  /**
+   * Sorts the first n indices of the array by the x and then the y
+   *  coordinates of the points, using the scratch array as temporary storage.
+   *  Returns the array that contains the sorted indices (either of them).
+   */
+  private static int[] sort(float[] xs, float[] ys, int[] array, int[] scratch, int n)
+  {
+    for (int from = 0; from < n; from += INSERTION_SORT_THRESHOLD)
+    {
+      int to = Math.min(n, from + INSERTION_SORT_THRESHOLD);
+      for (int i = from + 1; i < to; i++)
+      {
+        int p = array[i];
+        int j = i - 1;
+        while (j >= from && isBefore(xs, ys, p, array[j]))
+        {
+          array[j + 1] = array[j];
+          j--;
+        }
+        array[j + 1] = p;
+      }
+    }
+    
+    int[] src = array;
+    int[] dst = scratch;
+    for (int width = INSERTION_SORT_THRESHOLD; width < n; width *= 2)
+    {
+      for (int from = 0; from < n; from += 2 * width)
+      {
+        int mid = Math.min(n, from + width);
+        int to  = Math.min(n, from + 2 * width);
+        
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to)
+          dst[k++] = isBefore(xs, ys, src[j], src[i]) ? src[j++] : src[i++];
+        while (i < mid)
+          dst[k++] = src[i++];
+        while (j < to)
+          dst[k++] = src[j++];
+      }
+      
+      int[] tmp = src;
+      src = dst;
+      dst = tmp;
+    }
+    
+    return src;
+  }
+  
+  
+  private static boolean isBefore(float[] xs, float[] ys, int a, int b)
+  {
+    return xs[a] < xs[b] || (xs[a] == xs[b] && ys[a] < ys[b]);
+  }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The fork/join version of {@link QuickHull#computeIndices(PointBuffer, HullWorkspace)}.
+ *  The extreme point scan and the pruning are split in chunks that run in
+ *  parallel, and the two sides of every QuickHull step are computed in
+ *  parallel until the subsets become small enough to finish sequentially.
+ * </br>
+ * </br>Every part of the hull only writes to its own range of the workspace
+ *  arrays, so the result is exactly the same as for the sequential version.
+ * @author Sebastian Hjelm
+ */
+final class ParallelQuickHull
+{
+  /**
+   * Hulls of fewer points than this are computed sequentially, the same goes
+   *  for parts of hulls with fewer candidates than this.
+   */
+  static final int SEQUENTIAL_THRESHOLD = 1 << 15;
+  
+  private static final int CHUNK_SIZE = 1 << 14;
+  
+  // The positions of the extreme points found by ExtremesTask
+  private static final int TOP_LEFT     = 0;
+  private static final int TOP_RIGHT    = 1;
+  private static final int BOTTOM_LEFT  = 2;
+  private static final int BOTTOM_RIGHT = 3;
+  private static final int MIN          = 4;
+  private static final int MAX          = 5;
+  
+  private static final ThreadLocal<HullWorkspace> STACKS = ThreadLocal.withInitial(HullWorkspace::new);
+  
+  
+  private ParallelQuickHull()
+  {
+  }
+  
+  
+  static int computeIndices(float[] xs, float[] ys, int offset, int count, HullWorkspace workspace, ForkJoinPool pool)
+  {
+    if (count < SEQUENTIAL_THRESHOLD)
+      return QuickHull.computeIndices(xs, ys, offset, count, workspace);
+    
+    workspace.ensureCapacity(count);
+    return pool.invoke(new HullTask(xs, ys, offset, count, workspace.candidates, workspace.hull));
+  }
+  
+  
+  @SuppressWarnings("serial")
+  private static class HullTask extends RecursiveTask<Integer>
+  {
+    private final float[] xs;
+    private final float[] ys;
+    private final int offset;
+    private final int count;
+    private final int[] candidates;
+    private final int[] hull;
+    
+    public HullTask(float[] xs, float[] ys, int offset, int count, int[] candidates, int[] hull)
+    {
+      this.xs = xs;
+      this.ys = ys;
+      this.offset = offset;
+      this.count = count;
+      this.candidates = candidates;
+      this.hull = hull;
+    }
+    
+    @Override
+    protected Integer compute()
+    {
+      int[] extremes = new ExtremesTask(xs, ys, offset, offset + count).invoke();
+      int min = extremes[MIN];
+      int max = extremes[MAX];
+      
+      hull[0] = min;
+      if (xs[min] == xs[max] && ys[min] == ys[max])
+        return 1;
+      
+      int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+      int[] sizes = new int[chunks];
+      new FilterTask(xs, ys, offset, count, extremes, candidates, sizes, 0, chunks).invoke();
+      
+      // Move the kept points of every chunk down next to the previous ones
+      int n = sizes[0];
+      for (int i = 1; i < chunks; i++)
+      {
+        System.arraycopy(candidates, i * CHUNK_SIZE, candidates, n, sizes[i]);
+        n += sizes[i];
+      }
+      
+      long split = QuickHull.partition(xs, ys, min, max, min, candidates, 0, n);
+      int upper = (int) (split >>> 32);
+      int lower = (int) split;
+      
+      ChainTask upperTask = new ChainTask(xs, ys, min, max, candidates, 0, upper, hull);
+      ChainTask lowerTask = new ChainTask(xs, ys, max, min, candidates, lower, n, hull);
+      invokeAll(upperTask, lowerTask);
+      
+      // The chains are at the start of their candidate ranges, and there are
+      //  at least two candidates (min and max) between the ranges
+      int upperSize = upperTask.getRawResult();
+      int lowerSize = lowerTask.getRawResult();
+      System.arraycopy(hull, 0, hull, 1, upperSize);
+      hull[0] = min;
+      hull[upperSize + 1] = max;
+      System.arraycopy(hull, lower, hull, upperSize + 2, lowerSize);
+      
+      return upperSize + lowerSize + 2;
+    }
+  }
+  
+  
+  /**
+   * Finds the indices of the points with the smallest x - y, the largest x + y,
+   *  the smallest x + y, the largest x - y and the smallest and largest x
+   *  (ordered by y for equal x). Ties are resolved the same way as the
+   *  sequential scan does.
+   */
+  @SuppressWarnings("serial")
+  private static class ExtremesTask extends RecursiveTask<int[]>
+  {
+    private final float[] xs;
+    private final float[] ys;
+    private final int from;
+    private final int to;
+    
+    public ExtremesTask(float[] xs, float[] ys, int from, int to)
+    {
+      this.xs = xs;
+      this.ys = ys;
+      this.from = from;
+      this.to = to;
+    }
+    
+    @Override
+    protected int[] compute()
+    {
+      if (to - from <= CHUNK_SIZE)
+      {
+        int[] extremes = new int[6];
+        Arrays.fill(extremes, from);
+        for (int i = from + 1; i < to; i++)
+          update(extremes, i);
+        return extremes;
+      }
+      
+      int mid = (from + to) >>> 1;
+      ExtremesTask right = new ExtremesTask(xs, ys, mid, to);
+      right.fork();
+      int[] extremes = new ExtremesTask(xs, ys, from, mid).compute();
+      int[] other = right.join();
+      
+      for (int i : other)
+        update(extremes, i);
+      return extremes;
+    }
+    
+    private void update(int[] extremes, int i)
+    {
+      double sum  = (double) xs[i] + ys[i];
+      double diff = (double) xs[i] - ys[i];
+      
+      if (diff < (double) xs[extremes[TOP_LEFT]] - ys[extremes[TOP_LEFT]])
+        extremes[TOP_LEFT] = i;
+      if (sum > (double) xs[extremes[TOP_RIGHT]] + ys[extremes[TOP_RIGHT]])
+        extremes[TOP_RIGHT] = i;
+      if (sum < (double) xs[extremes[BOTTOM_LEFT]] + ys[extremes[BOTTOM_LEFT]])
+        extremes[BOTTOM_LEFT] = i;
+      if (diff > (double) xs[extremes[BOTTOM_RIGHT]] - ys[extremes[BOTTOM_RIGHT]])
+        extremes[BOTTOM_RIGHT] = i;
+      
+      int min = extremes[MIN];
+      if (xs[i] < xs[min] || (xs[i] == xs[min] && ys[i] < ys[min]))
+        extremes[MIN] = i;
+      int max = extremes[MAX];
+      if (xs[i] > xs[max] || (xs[i] == xs[max] && ys[i] > ys[max]))
+        extremes[MAX] = i;
+    }
+  }
+  
+  
+  /**
+   * Prunes the points chunk by chunk, the kept points of every chunk are put
+   *  at the start of the chunk's range in the candidate array.
+   */
+  @SuppressWarnings("serial")
+  private static class FilterTask extends RecursiveAction
+  {
+    private final float[] xs;
+    private final float[] ys;
+    private final int offset;
+    private final int count;
+    private final int[] extremes;
+    private final int[] candidates;
+    private final int[] sizes;
+    private final int fromChunk;
+    private final int toChunk;
+    
+    public FilterTask(float[] xs, float[] ys, int offset, int count, int[] extremes, int[] candidates, int[] sizes, int fromChunk, int toChunk)
+    {
+      this.xs = xs;
+      this.ys = ys;
+      this.offset = offset;
+      this.count = count;
+      this.extremes = extremes;
+      this.candidates = candidates;
+      this.sizes = sizes;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+    }
+    
+    @Override
+    protected void compute()
+    {
+      if (toChunk - fromChunk == 1)
+      {
+        int start = fromChunk * CHUNK_SIZE;
+        int end = Math.min(count, start + CHUNK_SIZE);
+        
+        int size = ScalarPruneKernel.filter(xs, ys, offset + start, offset + end,
+            extremes[TOP_LEFT], extremes[TOP_RIGHT], extremes[BOTTOM_LEFT], extremes[BOTTOM_RIGHT],
+            candidates, start);
+        sizes[fromChunk] = size - start;
+        return;
+      }
+      
+      int mid = (fromChunk + toChunk) >>> 1;
+      invokeAll(new FilterTask(xs, ys, offset, count, extremes, candidates, sizes, fromChunk, mid),
+                new FilterTask(xs, ys, offset, count, extremes, candidates, sizes, mid, toChunk));
+    }
+  }
+  
+  
+  /**
+   * Computes the hull points between A and B from the candidates in the
+   *  specified range (which are all to the left of the line from A to B). The
+   *  hull points are put at the start of the range in the hull array, and the
+   *  amount of them is returned.
+   */
+  @SuppressWarnings("serial")
+  private static class ChainTask extends RecursiveTask<Integer>
+  {
+    private final float[] xs;
+    private final float[] ys;
+    private final int A;
+    private final int B;
+    private final int[] candidates;
+    private final int from;
+    private final int to;
+    private final int[] hull;
+    
+    public ChainTask(float[] xs, float[] ys, int A, int B, int[] candidates, int from, int to, int[] hull)
+    {
+      this.xs = xs;
+      this.ys = ys;
+      this.A = A;
+      this.B = B;
+      this.candidates = candidates;
+      this.from = from;
+      this.to = to;
+      this.hull = hull;
+    }
+    
+    @Override
+    protected Integer compute()
+    {
+      if (to - from < SEQUENTIAL_THRESHOLD)
+        return QuickHull.computeChain(xs, ys, A, B, candidates, from, to, hull, from, STACKS.get()) - from;
+      
+      int furthest = QuickHull.getFurthest(xs, ys, A, B, candidates, from, to);
+      long split = QuickHull.partition(xs, ys, A, furthest, B, candidates, from, to);
+      int left  = (int) (split >>> 32);
+      int right = (int) split;
+      
+      ChainTask rightTask = new ChainTask(xs, ys, furthest, B, candidates, right, to, hull);
+      rightTask.fork();
+      int leftSize = new ChainTask(xs, ys, A, furthest, candidates, from, left, hull).compute();
+      int rightSize = rightTask.join();
+      
+      // The furthest point is in the middle part of the range, so the left
+      //  chain never reaches the start of the right one
+      hull[from + leftSize] = furthest;
+      System.arraycopy(hull, right, hull, from + leftSize + 1, rightSize);
+      
+      return leftSize + 1 + rightSize;
+    }
+  }
+}
@@ -78,6 +78,17 @@ public class Point extends Point2D implements Poolable, Serializable {
   }
   
   
+  /**
+   * Resets this point to the origin.
+   */
+  @Override
+  public void reset()
+  {
+    x = 0;
+    y = 0;
+  }
+  
+  
   @Override
   public String toString()
   {
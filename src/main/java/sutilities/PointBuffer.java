@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of 2D points, stored as two primitive arrays of coordinates
+ *  (structure of arrays) instead of one object per point. A point takes eight
+ *  bytes of memory this way, compared to well over thirty bytes for a
+ *  {@link Point} and the reference to it, and the garbage collector has only
+ *  two objects to trace no matter how many points there are.
+ * </br>
+ * </br>Points are referred to by their index. The coordinate arrays can be
+ *  accessed directly with {@link #getXs()} and {@link #getYs()}, only the first
+ *  {@link #size()} elements of them are valid.
+ * @author Sebastian Hjelm
+ * @see QuickHull#computeIndices(PointBuffer, HullWorkspace)
+ */
+public class PointBuffer
+{
+  private float[] xs_;
+  private float[] ys_;
+  private int size_;
+  
+  
+  /**
+   * Creates a new empty point buffer.
+   */
+  public PointBuffer()
+  {
+    this(16);
+  }
+  
+  /**
+   * Creates a new empty point buffer with room for the specified amount of
+   *  points.
+   * @param capacity The initial capacity
+   */
+  public PointBuffer(int capacity)
+  {
+    xs_ = new float[Math.max(1, capacity)];
+    ys_ = new float[Math.max(1, capacity)];
+  }
+  
+  /**
+   * Creates a new point buffer that wraps the specified coordinate arrays, the
+   *  arrays are used as they are (not copied).
+   * @param xs The x coordinates
+   * @param ys The y coordinates
+   * @param size The amount of points in the arrays
+   * @throws IllegalArgumentException If the arrays have different lengths, or
+   *  if the size is negative or larger than the arrays
+   */
+  public PointBuffer(float[] xs, float[] ys, int size)
+  {
+    if (xs.length != ys.length)
+      throw new IllegalArgumentException("The coordinate arrays must have the same length!");
+    if (size < 0 || size > xs.length)
+      throw new IllegalArgumentException("The size doesn't match the arrays!");
+    
+    xs_   = xs;
+    ys_   = ys;
+    size_ = size;
+  }
+  
+  
+  /**
+   * Creates a new point buffer that contains the coordinates of the specified
+   *  points.
+   * @param points The points to copy
+   * @return The new point buffer
+   */
+  public static PointBuffer of(Point[] points)
+  {
+    PointBuffer result = new PointBuffer(points.length);
+    for (Point p : points)
+      result.add(p.x, p.y);
+    
+    return result;
+  }
+  
+  
+  /**
+   * Adds a point to the end of this buffer.
+   * @param x The x coordinate
+   * @param y The y coordinate
+   * @return The index of the new point
+   */
+  public int add(float x, float y)
+  {
+    if (size_ == xs_.length)
+      ensureCapacity(Math.max(size_ * 2, size_ + 1));
+    
+    xs_[size_] = x;
+    ys_[size_] = y;
+    
+    return size_++;
+  }
+  
+  
+  /**
+   * Sets the coordinates of the point at the specified index.
+   * @param index The index of the point
+   * @param x The x coordinate
+   * @param y The y coordinate
+   * @throws IndexOutOfBoundsException If the index is out of bounds
+   */
+  public void set(int index, float x, float y)
+  {
+    checkIndex(index);
+    
+    xs_[index] = x;
+    ys_[index] = y;
+  }
+  
+  
+  /**
+   * Returns the x coordinate of the point at the specified index.
+   * @param index The index of the point
+   * @return The x coordinate
+   * @throws IndexOutOfBoundsException If the index is out of bounds
+   */
+  public float getX(int index)
+  {
+    checkIndex(index);
+    return xs_[index];
+  }
+  
+  
+  /**
+   * Returns the y coordinate of the point at the specified index.
+   * @param index The index of the point
+   * @return The y coordinate
+   * @throws IndexOutOfBoundsException If the index is out of bounds
+   */
+  public float getY(int index)
+  {
+    checkIndex(index);
+    return ys_[index];
+  }
+  
+  
+  /**
+   * Returns a new {@link Point} with the coordinates of the point at the
+   *  specified index.
+   * @param index The index of the point
+   * @return The point
+   * @throws IndexOutOfBoundsException If the index is out of bounds
+   */
+  public Point get(int index)
+  {
+    checkIndex(index);
+    return new Point(xs_[index], ys_[index]);
+  }
+  
+  
+  /**
+   * Returns the array of x coordinates. The array may be longer than the
+   *  amount of points, and it is replaced when the buffer grows.
+   * @return The x coordinates
+   */
+  public float[] getXs()
+  {
+    return xs_;
+  }
+  
+  
+  /**
+   * Returns the array of y coordinates. The array may be longer than the
+   *  amount of points, and it is replaced when the buffer grows.
+   * @return The y coordinates
+   */
+  public float[] getYs()
+  {
+    return ys_;
+  }
+  
+  
+  /**
+   * Returns the amount of points in this buffer.
+   * @return The amount of points
+   */
+  public int size()
+  {
+    return size_;
+  }
+  
+  
+  /**
+   * Removes all points from this buffer, the capacity is kept.
+   */
+  public void clear()
+  {
+    size_ = 0;
+  }
+  
+  
+  /**
+   * Makes sure this buffer has room for at least the specified amount of points.
+   * @param capacity The minimum capacity
+   */
+  public void ensureCapacity(int capacity)
+  {
+    if (capacity > xs_.length)
+    {
+      xs_ = Arrays.copyOf(xs_, capacity);
+      ys_ = Arrays.copyOf(ys_, capacity);
+    }
+  }
+  
+  
+  private void checkIndex(int index)
+  {
+    if (index < 0 || index >= size_)
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size_);
+  }
+}
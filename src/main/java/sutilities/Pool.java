@@ -9,36 +9,148 @@
 
 package sutilities;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.InaccessibleObjectException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * A generic class that describes an object pool where objects can be stored and
  *  acquired to avoid unnecessary creations of new object instances.
+ * </br>
+ * </br>The pool is thread safe. How the idle elements are guarded is decided
+ *  by the {@link Mode} that the pool is created with.
+ * </br>
+ * </br>New instances are either created by a factory, see {@link #Pool(Supplier)},
+ *  or by invoking a constructor of the pooled type, see {@link #Pool(Class, Class...)}.
+ *  The constructor is looked up and bound once when the pool is created, so
+ *  creating an instance costs roughly as much as calling it directly.
+ * </br>
+ * </br>By default the pool keeps every element that is stored in it. To release
+ *  elements after a burst the amount of idle elements can be limited with
+ *  {@link #setMaxIdle(int)}, and surplus elements can be released gradually in
+ *  the background with {@link #setIdleTrimming(int, long, TimeUnit)}. The
+ *  opposite is also possible, {@link #setRefillWatermarks(int, int)} keeps the
+ *  pool topped up in the background so acquiring rarely has to create instances.
+ *  Instead of discarding the elements that don't fit within the limit they can
+ *  be kept in a tier that the garbage collector may reclaim when memory runs
+ *  low, see {@link #setSoftRetention(boolean)}.
+ * </br>
+ * </br>For expensive resources the amount of outstanding elements can be limited
+ *  with {@link #setMaxOutstanding(int)}, acquiring then waits until an element
+ *  is stored instead of creating new instances without bounds.
+ * </br>
+ * </br>Stored elements can be reset automatically, see {@link #setResetMode(ResetMode)}.
  * @author Sebastian Hjelm
  *
  * @param <E> Which type of objects this pool should contain, must be {@code Poolable}
  */
 public class Pool<E extends Poolable> {
   
-  private Object lock_;
-  
-  private Class<E> class_;
-  private Constructor<E> constructor_;
-  
-  private Class<?>[] parameterTypes_;
-  private Object[]   argumentList_;
+  /**
+   * Describes how a pool guards its list of idle elements against concurrent
+   *  access.
+   * @author Sebastian Hjelm
+   */
+  public enum Mode
+  {
+    /**
+     * All accesses to the idle elements are serialized by a single monitor.
+     *  This is the default mode.
+     */
+    SYNCHRONIZED,
+    /**
+     * The idle elements are kept in a lock-free stack that is updated using
+     *  compare-and-set, threads never block each other. Each stored element
+     *  allocates a small list node, in exchange the pool scales much better
+     *  when many threads use it at the same time.
+     */
+    LOCK_FREE,
+    /**
+     * Each thread keeps a small cache of idle elements in front of a shared
+     *  lock-free stack (see {@link #LOCK_FREE}). Threads that store the
+     *  elements they acquire rarely touch the shared stack at all, it is only
+     *  used to refill or spill the thread caches in batches. Elements cached by
+     *  one thread aren't available to other threads.
+     */
+    THREAD_CACHED
+  }
   
-  private volatile int balance_;
+  /**
+   * Describes whether and when a pool resets the elements that are stored in
+   *  it, using {@link Poolable#reset()} and {@link Poolable#validate()}.
+   * @author Sebastian Hjelm
+   */
+  public enum ResetMode
+  {
+    /**
+     * Elements are never reset, they are acquired in the state they were
+     *  stored in. This is the default mode.
+     */
+    NONE,
+    /**
+     * Elements are reset and validated by {@code store()} before they are
+     *  added to the idle elements.
+     */
+    INLINE,
+    /**
+     * Elements are reset and validated in batches on the pool maintenance
+     *  thread, so storing an element costs the same as without resetting.
+     *  If the pool runs out of idle elements, elements that haven't been
+     *  reset yet are reset by {@code acquire()} instead of creating new ones.
+     */
+    DEFERRED
+  }
   
   /**
-   * The first node that contains an unused object.
+   * The amount of idle elements each thread may cache in the
+   *  {@link Mode#THREAD_CACHED} mode.
    */
-  private volatile PoolNode<E> firstObjectNode_;
+  private static final int THREAD_CACHE_SIZE = 32;
+  
+  
+  private Mode mode_;
+  
   /**
-   * The first unused node.
+   * Guards changes to the trimming task and the outstanding limit.
    */
-  private volatile PoolNode<E> firstStoredNode_;
+  private Object lock_;
+  
+  private MethodHandle constructor_;
+  private Class<?>[]   parameterTypes_;
+  
+  private volatile Supplier<? extends E> factory_;
+  
+  private PoolMetrics metrics_;
+  
+  private volatile PoolLeakDetector leakDetector_;
+  
+  private volatile ResetMode resetMode_;
+  private PoolStorage<E> pendingReset_;
+  private LongAdder pending_;
+  private AtomicBoolean resetting_;
+  
+  private PoolStorage<E> storage_;
+  private ThreadCachedPoolStorage<E> threadCache_;
+  
+  private volatile int maxIdle_;
+  private volatile SoftPoolStorage<E> softTier_;
+  
+  private volatile int trimTarget_;
+  private ScheduledFuture<?> trimTask_;
+  
+  private volatile int refillLow_;
+  private volatile int refillHigh_;
+  private AtomicBoolean refilling_;
+  
+  private volatile int maxOutstanding_;
+  private volatile PoolPermits permits_;
   
   /**
    * Creates a new empty object pool, using the specified class and parameter
@@ -49,6 +161,8 @@ public class Pool<E extends Poolable> {
    * </br>If you use specify a parameter list you <i>must</i> invoke
    *  {@link #setArgumentList(Object...)} to set the arguments to use when
    *  instantiating objects of the type this class contains (E).
+   * </br>
+   * </br>The pool is created in the {@link Mode#SYNCHRONIZED} mode.
    * @param c The class of the pool type (class of E)
    * @param parameterTypes An (optional) list of parameters to invoke the correct constructor
    * @throws PoolException If the type this class contains (E) doesn't have a
@@ -57,23 +171,123 @@ public class Pool<E extends Poolable> {
    */
   public Pool(Class<E> c, Class<?>... parameterTypes)
   {
-    lock_ = new Object();
+    this(Mode.SYNCHRONIZED, c, parameterTypes);
+  }
+  
+  /**
+   * Creates a new empty object pool that uses the specified mode, see
+   *  {@link #Pool(Class, Class...)} for details about the class and parameter
+   *  list.
+   * @param mode How the idle elements of the pool should be guarded
+   * @param c The class of the pool type (class of E)
+   * @param parameterTypes An (optional) list of parameters to invoke the correct constructor
+   * @throws PoolException If the type this class contains (E) doesn't have a
+   *  constructor that matches the specified parameter list
+   * @throws NullPointerException If the mode is <code>null</code>
+   * @see #setArgumentList(Object...)
+   */
+  public Pool(Mode mode, Class<E> c, Class<?>... parameterTypes)
+  {
+    this(mode);
     
-    class_ = c;
     parameterTypes_ = parameterTypes;
-
+    
+    Constructor<E> constructor = null;
     try
     {
-      constructor_ = class_.getDeclaredConstructor(parameterTypes);
-      constructor_.setAccessible(true);
-      
-      if (parameterTypes.length == 0)
-        argumentList_ = new Object[0];
+      constructor = c.getDeclaredConstructor(parameterTypes);
     }
     catch (NoSuchMethodException e)
     {
       throw new PoolException("No constructor exists corresponding to the specified argument list!", e);
     }
+    
+    try
+    {
+      constructor.setAccessible(true);
+    }
+    catch (InaccessibleObjectException | SecurityException e)
+    {
+      // Public constructors can still be used without suppressing access checks
+    }
+    
+    try
+    {
+      constructor_ = MethodHandles.lookup().unreflectConstructor(constructor)
+          .asType(MethodType.methodType(Object.class, parameterTypes));
+    }
+    catch (IllegalAccessException e)
+    {
+      throw new PoolException("Constructor isn't visible!", e);
+    }
+    
+    if (parameterTypes.length == 0)
+      factory_ = new ConstructorFactory<E>(constructor_);
+  }
+  
+  /**
+   * Creates a new empty object pool that uses the specified factory to create
+   *  new instances of the type this class contains (E). No reflection is used
+   *  by pools created this way.
+   * </br>
+   * </br>The pool is created in the {@link Mode#SYNCHRONIZED} mode.
+   * @param factory The factory that creates new instances, for example
+   *  {@code Point::new}
+   * @throws NullPointerException If the factory is <code>null</code>
+   */
+  public Pool(Supplier<? extends E> factory)
+  {
+    this(Mode.SYNCHRONIZED, factory);
+  }
+  
+  /**
+   * Creates a new empty object pool that uses the specified mode and factory,
+   *  see {@link #Pool(Supplier)} for details.
+   * @param mode How the idle elements of the pool should be guarded
+   * @param factory The factory that creates new instances, for example
+   *  {@code Point::new}
+   * @throws NullPointerException If the mode or factory is <code>null</code>
+   */
+  public Pool(Mode mode, Supplier<? extends E> factory)
+  {
+    this(mode);
+    
+    if (factory == null)
+      throw new NullPointerException("The factory can't be null!");
+    
+    factory_ = factory;
+  }
+  
+  private Pool(Mode mode)
+  {
+    if (mode == null)
+      throw new NullPointerException("The mode can't be null!");
+    
+    mode_ = mode;
+    lock_ = new Object();
+    
+    metrics_ = new PoolMetrics();
+    
+    refilling_ = new AtomicBoolean();
+    
+    resetMode_    = ResetMode.NONE;
+    pendingReset_ = new LockFreePoolStorage<E>();
+    pending_      = new LongAdder();
+    resetting_    = new AtomicBoolean();
+    
+    storage_ = createStorage(mode);
+    if (storage_ instanceof ThreadCachedPoolStorage)
+      threadCache_ = (ThreadCachedPoolStorage<E>) storage_;
+  }
+  
+  
+  /**
+   * Returns the mode this pool was created with.
+   * @return The mode of this pool
+   */
+  public Mode getMode()
+  {
+    return mode_;
   }
   
   
@@ -83,10 +297,14 @@ public class Pool<E extends Poolable> {
    *  must match the parameter type list specified when creating this pool.
    * @param initargs The arguments list
    * @throws PoolException If the specified argument list doesn't match the
-   *  parameter type list (either by length or by type)
+   *  parameter type list (either by length or by type), or if the pool was
+   *  created with a factory
    */
   public void setArgumentList(Object... initargs)
   {
+    if (constructor_ == null)
+      throw new PoolException("The pool uses a factory, it has no argument list");
+    
     if (initargs.length != parameterTypes_.length)
       throw new PoolException("The argument list length doesn't match the parameter list length");
     
@@ -96,75 +314,409 @@ public class Pool<E extends Poolable> {
         throw new PoolException("Parameters and argument list types doesn't match!");
     }
     
-    argumentList_ = initargs;
+    try
+    {
+      factory_ = new ConstructorFactory<E>(MethodHandles.insertArguments(constructor_, 0, initargs));
+    }
+    catch (ClassCastException e)
+    {
+      throw new PoolException("Parameters and argument list types doesn't match!", e);
+    }
   }
   
   
   /**
-   * Creates and stores the specified amount of instances of the type this pool
-   *  contains (E).
-   * @param amount The amount of instances to allocate
-   * @throws PoolException If the system failed to create instances of the
-   *  type (E)
+   * Sets whether and when this pool resets the elements that are stored in it.
+   *  Elements that are reset are also validated, and discarded if they can't
+   *  be reused. See {@link ResetMode} for the available modes, the default is
+   *  {@link ResetMode#NONE}.
+   * @param resetMode The new reset mode
+   * @throws NullPointerException If the reset mode is <code>null</code>
    */
-  public void allocate(int amount)
+  public void setResetMode(ResetMode resetMode)
+  {
+    if (resetMode == null)
+      throw new NullPointerException("The reset mode can't be null!");
+    
+    resetMode_ = resetMode;
+  }
+  
+  
+  /**
+   * Returns whether and when this pool resets the elements that are stored in it.
+   * @return The reset mode of this pool
+   * @see #setResetMode(ResetMode)
+   */
+  public ResetMode getResetMode()
+  {
+    return resetMode_;
+  }
+  
+  
+  /**
+   * Sets the maximum amount of idle elements this pool may hold. Elements that
+   *  are stored when the pool is full are discarded and left to the garbage
+   *  collector. A value of zero or less means that the pool is unbounded, which
+   *  is the default.
+   * </br>
+   * </br>The limit is approximate, threads that store elements at the same
+   *  time may exceed it slightly. In the {@link Mode#THREAD_CACHED} mode the
+   *  limit applies to the elements the storing thread can reach (see
+   *  {@link #getIdleSize()}), so every thread may in addition cache a few
+   *  elements of its own.
+   * @param maxIdle The maximum amount of idle elements
+   */
+  public void setMaxIdle(int maxIdle)
+  {
+    maxIdle_ = Math.max(0, maxIdle);
+  }
+  
+  
+  /**
+   * Returns the maximum amount of idle elements this pool may hold.
+   * @return The maximum amount of idle elements, or zero if the pool is unbounded
+   * @see #setMaxIdle(int)
+   */
+  public int getMaxIdle()
+  {
+    return maxIdle_;
+  }
+  
+  
+  /**
+   * Sets whether idle elements that don't fit within the maximum amount of idle
+   *  elements (see {@link #setMaxIdle(int)}) are kept in a soft tier instead of
+   *  being discarded. The soft tier only holds soft references to its elements,
+   *  so the garbage collector reclaims them before it runs out of memory. When
+   *  the regular idle elements run out elements are acquired from the soft tier,
+   *  and only if it is empty are new instances created.
+   * </br>
+   * </br>This lets a large pool give way to the rest of the application when
+   *  memory is scarce, while the elements within the maximum stay in the pool.
+   *  Elements released by trimming (see {@link #setIdleTrimming(int, long, TimeUnit)})
+   *  are moved to the soft tier as well. Elements in the soft tier aren't
+   *  included in the idle size. Disabling the soft tier discards its elements.
+   * @param enabled Whether or not surplus elements should be softly retained
+   */
+  public void setSoftRetention(boolean enabled)
+  {
+    if (enabled != (softTier_ != null))
+      softTier_ = enabled ? new SoftPoolStorage<E>() : null;
+  }
+  
+  
+  /**
+   * Returns whether surplus idle elements are kept in a soft tier.
+   * @return Whether or not surplus elements are softly retained
+   * @see #setSoftRetention(boolean)
+   */
+  public boolean isSoftRetention()
+  {
+    return softTier_ != null;
+  }
+  
+  
+  /**
+   * Enables gradual trimming of idle elements in the background. Each period,
+   *  half of the idle elements in excess of the target size are released from
+   *  the pool, so the pool shrinks back towards the target once a burst is over
+   *  without discarding everything at once.
+   * </br>
+   * </br>Elements that are cached by other threads in the
+   *  {@link Mode#THREAD_CACHED} mode aren't affected by the trimming.
+   * @param targetIdle The amount of idle elements the pool should shrink towards
+   * @param period The time between two trimming passes, zero or less disables trimming
+   * @param unit The unit of the period
+   */
+  public void setIdleTrimming(int targetIdle, long period, TimeUnit unit)
   {
     synchronized (lock_)
     {
-      for (int i = 0; i < amount; i++)
+      if (trimTask_ != null)
       {
-        PoolNode<E> node = new PoolNode<E>();
-        
-        node.element = createInstance();
-        
-        node.next = firstObjectNode_;
-        firstObjectNode_ = node;
+        trimTask_.cancel(false);
+        trimTask_ = null;
       }
+      
+      trimTarget_ = Math.max(0, targetIdle);
+      
+      if (period > 0)
+        trimTask_ = PoolMaintenance.schedule(this, Pool::trimStep, period, unit);
     }
   }
   
   
   /**
-   * Acquires and returns an instance of the type this pool contains (E). If the
-   *  pool is empty a new instance of E is created and returned.
-   * @return An instance of the type this pool contains (E)
-   * @throws PoolException If a new instance were to be created and the
-   *  creation failed
+   * Enables background refilling of this pool. Whenever an acquire leaves fewer
+   *  than {@code low} idle elements, new instances are created on the pool
+   *  maintenance thread until there are {@code high} idle elements again. The
+   *  instances are created without blocking any other users of the pool, which
+   *  keeps the cost of construction off threads that acquire elements, as long
+   *  as the pool is refilled faster than it is drained.
+   * </br>
+   * </br>If the pool is bounded (see {@link #setMaxIdle(int)}) it is never
+   *  refilled beyond the bound.
+   * @param low The amount of idle elements below which the pool is refilled,
+   *  zero or less disables refilling
+   * @param high The amount of idle elements to refill the pool to, raised to
+   *  {@code low} if it is smaller
    */
-  public E acquire()
+  public void setRefillWatermarks(int low, int high)
+  {
+    refillHigh_ = Math.max(low, high);
+    refillLow_  = Math.max(0, low);
+    
+    requestRefill();
+  }
+  
+  
+  /**
+   * Sets the maximum amount of elements that may be outstanding (acquired but
+   *  not stored) at the same time. When the limit is reached acquiring blocks
+   *  until another thread stores an element. Waiting threads are served in
+   *  first-in-first-out order, and they are parked using {@link java.util.concurrent.locks.LockSupport}
+   *  rather than monitors. A value of zero or less removes the limit, which is
+   *  the default.
+   * </br>
+   * </br>The limit should preferably be set before the pool is used. An existing
+   *  limit may be changed while elements are outstanding, but removing it wakes
+   *  up all waiting threads and lets them through.
+   * </br>
+   * </br>Enabling the limit on a pool without one must be done while no other
+   *  thread is acquiring elements (outstanding elements are fine). An acquire
+   *  that is in progress when the limit is enabled may not be counted, and
+   *  since storing that element releases a permit the limit would be exceeded
+   *  by one from then on.
+   * @param maxOutstanding The maximum amount of outstanding elements
+   * @see #acquire(long, TimeUnit)
+   */
+  public void setMaxOutstanding(int maxOutstanding)
   {
     synchronized (lock_)
     {
-      E result = null;
+      maxOutstanding = Math.max(0, maxOutstanding);
       
-      if (firstObjectNode_ != null)
+      PoolPermits permits = permits_;
+      if (maxOutstanding == 0)
       {
-        result = firstObjectNode_.element;
-        
-        PoolNode<E> node = firstObjectNode_;
-        
-        firstObjectNode_ = node.next;
-        
-        node.next    = firstStoredNode_;
-        node.element = null;
-        
-        firstStoredNode_ = node;
+        permits_ = null;
+        if (permits != null)
+          permits.release(Integer.MAX_VALUE / 2);
       }
-      else
+      else if (permits == null)
+      {
+        permits_ = new PoolPermits(maxOutstanding - getBalance());
+      }
+      else if (maxOutstanding > maxOutstanding_)
       {
-        result = createInstance();
+        permits.release(maxOutstanding - maxOutstanding_);
+      }
+      else if (maxOutstanding < maxOutstanding_)
+      {
+        permits.reducePermits(maxOutstanding_ - maxOutstanding);
       }
       
-      balance_ += 1;
+      maxOutstanding_ = maxOutstanding;
+    }
+  }
+  
+  
+  /**
+   * Returns the maximum amount of elements that may be outstanding at the same
+   *  time.
+   * @return The maximum amount of outstanding elements, or zero if there is no limit
+   * @see #setMaxOutstanding(int)
+   */
+  public int getMaxOutstanding()
+  {
+    return maxOutstanding_;
+  }
+  
+  
+  /**
+   * Releases idle elements from this pool until at most the specified amount
+   *  remains.
+   * @param targetIdle The amount of idle elements to keep
+   */
+  public void trim(int targetIdle)
+  {
+    release(getIdleSize() - Math.max(0, targetIdle));
+  }
+  
+  
+  /**
+   * Enables sampled leak detection. One in every {@code sampleInterval} acquired
+   *  elements is tracked, and if a tracked element is garbage collected without
+   *  having been stored a warning is reported through {@link Debugger}, along
+   *  with the stack trace of the call that acquired it. The amount of detected
+   *  leaks is also included in the statistics of the pool.
+   * </br>
+   * </br>Leaks are detected when elements are acquired after the leaked element
+   *  was collected, or when the statistics are read.
+   * @param sampleInterval How many elements to acquire for every tracked element,
+   *  zero or less disables leak detection
+   * @see #getStatistics()
+   */
+  public void setLeakDetection(int sampleInterval)
+  {
+    leakDetector_ = sampleInterval > 0 ? new PoolLeakDetector(sampleInterval, metrics_.leaked) : null;
+  }
+  
+  
+  /**
+   * Returns the amount of idle elements in this pool, that is the amount of
+   *  elements that can be acquired without creating new instances.
+   * </br>
+   * </br>In the {@link Mode#THREAD_CACHED} mode only the elements the calling
+   *  thread can reach are included, which excludes the elements cached by
+   *  other threads. This is the size that the maximum amount of idle elements,
+   *  the refill watermarks and the idle trimming are applied to.
+   * </br>
+   * </br>The size is read without blocking, if other threads are using the
+   *  pool at the same time the result may not include their latest changes.
+   * @return The amount of idle elements
+   */
+  public int getIdleSize()
+  {
+    return (int) reachableIdle();
+  }
+  
+  
+  /**
+   * Creates and stores the specified amount of instances of the type this pool
+   *  contains (E). If the pool is bounded (see {@link #setMaxIdle(int)}) no more
+   *  instances are created than there is room for.
+   * @param amount The amount of instances to allocate
+   * @throws PoolException If the system failed to create instances of the
+   *  type (E)
+   */
+  public void allocate(int amount)
+  {
+    int maxIdle = maxIdle_;
+    if (maxIdle > 0)
+      amount = Math.min(amount, maxIdle - getIdleSize());
+    
+    if (amount <= 0)
+      return;
+    
+    @SuppressWarnings("unchecked")
+    E[] buffer = (E[]) new Poolable[Math.min(amount, 64)];
+    while (amount > 0)
+    {
+      int count = Math.min(amount, buffer.length);
+      for (int i = 0; i < count; i++)
+        buffer[i] = createInstance();
       
-      return result;
+      storage_.offer(buffer, 0, count);
+      metrics_.idle.add(count);
+      amount -= count;
     }
   }
   
   
+  /**
+   * Acquires and returns an instance of the type this pool contains (E). If the
+   *  pool is empty a new instance of E is created and returned.
+   * </br>
+   * </br>If the maximum amount of outstanding elements has been reached (see
+   *  {@link #setMaxOutstanding(int)}) this method blocks until an element is
+   *  stored.
+   * @return An instance of the type this pool contains (E)
+   * @throws PoolException If a new instance were to be created and the
+   *  creation failed
+   */
+  public E acquire()
+  {
+    PoolPermits permits = permits_;
+    if (permits == null)
+      return acquireElement();
+    
+    awaitPermits(permits, 1);
+    try
+    {
+      return acquireElement();
+    }
+    catch (RuntimeException e)
+    {
+      permits.release();
+      throw e;
+    }
+  }
+  
+  
+  /**
+   * Acquires and returns an instance of the type this pool contains (E),
+   *  waiting at most the specified time for an element to be stored if the
+   *  maximum amount of outstanding elements has been reached (see
+   *  {@link #setMaxOutstanding(int)}). If there is no limit this method behaves
+   *  like {@link #acquire()}.
+   * @param timeout The maximum time to wait
+   * @param unit The unit of the timeout
+   * @return An instance of the type this pool contains (E), or <code>null</code>
+   *  if the timeout elapsed first
+   * @throws InterruptedException If the thread was interrupted while waiting
+   * @throws PoolException If a new instance were to be created and the
+   *  creation failed
+   */
+  public E acquire(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    PoolPermits permits = permits_;
+    if (permits == null)
+      return acquireElement();
+    
+    if (!awaitPermits(permits, 1, unit.toNanos(timeout)))
+      return null;
+    
+    try
+    {
+      return acquireElement();
+    }
+    catch (RuntimeException e)
+    {
+      permits.release();
+      throw e;
+    }
+  }
+  
+  
+  private E acquireElement()
+  {
+    E result = storage_.poll();
+    
+    if (result != null)
+    {
+      metrics_.idle.decrement();
+      metrics_.hits.increment();
+      metrics_.acquired.increment();
+    }
+    else if ((result = pollPendingReset()) != null || (result = pollSoftTier()) != null)
+    {
+      metrics_.hits.increment();
+      metrics_.acquired.increment();
+    }
+    else
+    {
+      result = createInstance();
+      metrics_.acquired.increment();
+    }
+    
+    metrics_.recordAcquire();
+    
+    PoolLeakDetector leakDetector = leakDetector_;
+    if (leakDetector != null)
+      leakDetector.acquired(result);
+    
+    if (refillLow_ > 0)
+      requestRefill();
+    
+    return result;
+  }
+  
+  
   /**
    * Stores the specified element in the pool. The element shouldn't be referenced
-   *  from the outside once it is in the pool.
+   *  from the outside once it is in the pool. If the pool is full the element
+   *  is discarded instead.
    * @param element The element to store in the pool
    * @throws NullPointerException If the element passed is <code>null</code>
    */
@@ -172,28 +724,181 @@ public class Pool<E extends Poolable> {
   {
     if (element == null)
       throw new NullPointerException("Can't store a null element!");
-   
-    synchronized (lock_)
+    
+    PoolLeakDetector leakDetector = leakDetector_;
+    if (leakDetector != null)
+      leakDetector.stored(element);
+    
+    try
     {
-      PoolNode<E> node = null;
-      
-      if (firstStoredNode_ != null)
+      switch (resetMode_)
       {
-        node = firstStoredNode_;
-        
-        firstStoredNode_ = node.next;
+        case INLINE:
+          if (reset(element))
+            accept(element);
+          else
+            metrics_.discarded.increment();
+          break;
+        case DEFERRED:
+          pendingReset_.offer(element);
+          pending_.increment();
+          requestReset();
+          break;
+        default:
+          accept(element);
+          break;
       }
-      else
+    }
+    finally
+    {
+      metrics_.stored.increment();
+      
+      PoolPermits permits = permits_;
+      if (permits != null)
+        permits.release();
+    }
+  }
+  
+  
+  /**
+   * Acquires the specified amount of instances of the type this pool contains
+   *  (E) and puts them in the specified array, starting at index zero. The
+   *  idle elements are taken from the pool in a single operation, and instances
+   *  are created for the remainder if the pool runs out.
+   * </br>
+   * </br>If the pool limits the amount of outstanding elements (see
+   *  {@link #setMaxOutstanding(int)}) this method blocks until all the elements
+   *  can be acquired at once.
+   * @param destination The array to put the acquired elements in
+   * @param amount The amount of elements to acquire
+   * @throws PoolException If new instances were to be created and the creation
+   *  failed, or if the amount exceeds the maximum amount of outstanding elements
+   * @throws ArrayIndexOutOfBoundsException If the array is shorter than the amount
+   */
+  public void acquireAll(E[] destination, int amount)
+  {
+    if (amount > destination.length)
+      throw new ArrayIndexOutOfBoundsException("The array can't hold " + amount + " elements");
+    
+    PoolPermits permits = permits_;
+    if (permits != null && amount > 0)
+    {
+      if (amount > getMaxOutstanding())
+        throw new PoolException("Can't acquire more elements than the maximum amount of outstanding elements");
+      
+      awaitPermits(permits, amount);
+    }
+    
+    int hits = storage_.poll(destination, 0, amount);
+    metrics_.idle.add(-hits);
+    
+    if (hits < amount)
+      hits += pollPendingReset(destination, hits, amount - hits);
+    
+    SoftPoolStorage<E> softTier = softTier_;
+    if (hits < amount && softTier != null)
+      hits += softTier.poll(destination, hits, amount - hits);
+    
+    int count = hits;
+    metrics_.hits.add(hits);
+    
+    try
+    {
+      while (count < amount)
       {
-        node = new PoolNode<E>();
+        destination[count] = createInstance();
+        count++;
       }
+    }
+    finally
+    {
+      metrics_.acquired.add(count);
+      metrics_.recordAcquire();
       
-      node.element = element;
-      node.next = firstObjectNode_;
-      
-      firstObjectNode_ = node;
+      if (permits != null && count < amount)
+        permits.release(amount - count);
+    }
+    
+    PoolLeakDetector leakDetector = leakDetector_;
+    if (leakDetector != null)
+    {
+      for (int i = 0; i < amount; i++)
+        leakDetector.acquired(destination[i]);
+    }
+    
+    if (refillLow_ > 0)
+      requestRefill();
+  }
+  
+  
+  /**
+   * Stores the specified amount of elements from the specified array in the pool,
+   *  starting at index zero. The elements are added to the pool in a single
+   *  operation, if the pool doesn't have room for all of them the remainder
+   *  is discarded. The elements shouldn't be referenced from the outside once
+   *  they are in the pool.
+   * @param elements The array that contains the elements to store
+   * @param amount The amount of elements to store
+   * @throws NullPointerException If any of the elements is <code>null</code>
+   * @throws ArrayIndexOutOfBoundsException If the array is shorter than the amount
+   */
+  public void storeAll(E[] elements, int amount)
+  {
+    if (amount > elements.length)
+      throw new ArrayIndexOutOfBoundsException("The array doesn't contain " + amount + " elements");
+    
+    for (int i = 0; i < amount; i++)
+    {
+      if (elements[i] == null)
+        throw new NullPointerException("Can't store a null element!");
+    }
+    
+    PoolLeakDetector leakDetector = leakDetector_;
+    if (leakDetector != null)
+    {
+      for (int i = 0; i < amount; i++)
+        leakDetector.stored(elements[i]);
+    }
+    
+    try
+    {
+      switch (resetMode_)
+      {
+        case INLINE:
+          // Valid elements are accepted in batches, split by the invalid ones
+          int start = 0;
+          for (int i = 0; i < amount; i++)
+          {
+            if (!reset(elements[i]))
+            {
+              accept(elements, start, i - start);
+              metrics_.discarded.increment();
+              start = i + 1;
+            }
+          }
+          
+          accept(elements, start, amount - start);
+          break;
+        case DEFERRED:
+          if (amount > 0)
+          {
+            pendingReset_.offer(elements, 0, amount);
+            pending_.add(amount);
+            requestReset();
+          }
+          break;
+        default:
+          accept(elements, 0, amount);
+          break;
+      }
+    }
+    finally
+    {
+      metrics_.stored.add(amount);
       
-      balance_ -= 1;
+      PoolPermits permits = permits_;
+      if (permits != null && amount > 0)
+        permits.release(amount);
     }
   }
   
@@ -203,50 +908,390 @@ public class Pool<E extends Poolable> {
    *  <pre>acquriedAmount - storedAmount</pre>
    *  Meaning the amount of elements obtained by calling {@code acquire()}  
    *  minus the amount of elements put into the pool by calling {@code store()}.
+   * </br>
+   * </br>The balance is read without blocking, if other threads are using the
+   *  pool at the same time the result may not include their latest changes.
    * @return The balance of this pool
    */
   public int getBalance()
   {
-    synchronized (lock_)
+    return (int) metrics_.balance();
+  }
+  
+  
+  /**
+   * Returns a snapshot of the counters of this pool, such as the amount of hits
+   *  and misses and the time spent creating new instances. The counters are
+   *  read without blocking, if other threads are using the pool at the same time
+   *  the snapshot may only include some of their latest changes.
+   * @return A snapshot of the counters of this pool
+   */
+  public PoolStatistics getStatistics()
+  {
+    PoolLeakDetector leakDetector = leakDetector_;
+    if (leakDetector != null)
+      leakDetector.expunge();
+    
+    return metrics_.snapshot();
+  }
+  
+  
+  /**
+   * Creates the storage of idle elements that corresponds to the specified mode.
+   * @param mode The mode
+   * @return The new storage
+   */
+  static <T> PoolStorage<T> createStorage(Mode mode)
+  {
+    switch (mode)
     {
-      return balance_;
+      case LOCK_FREE:
+        return new LockFreePoolStorage<T>();
+      case THREAD_CACHED:
+        return new ThreadCachedPoolStorage<T>(new LockFreePoolStorage<T>(), THREAD_CACHE_SIZE);
+      default:
+        return new SynchronizedPoolStorage<T>();
     }
   }
   
   
-  private E createInstance()
+  private void awaitPermits(PoolPermits permits, int amount)
   {
-    E result = null;
+    if (!permits.hasQueuedThreads() && permits.tryAcquire(amount))
+      return;
     
+    long start = System.nanoTime();
+    permits.acquireUninterruptibly(amount);
+    
+    metrics_.waited.increment();
+    metrics_.waitTime.add(System.nanoTime() - start);
+  }
+  
+  
+  private boolean awaitPermits(PoolPermits permits, int amount, long timeoutNanos) throws InterruptedException
+  {
+    if (!permits.hasQueuedThreads() && permits.tryAcquire(amount))
+      return true;
+    
+    long start = System.nanoTime();
+    boolean acquired = permits.tryAcquire(amount, timeoutNanos, TimeUnit.NANOSECONDS);
+    
+    metrics_.waited.increment();
+    metrics_.waitTime.add(System.nanoTime() - start);
+    if (!acquired)
+      metrics_.timedOut.increment();
+    
+    return acquired;
+  }
+  
+  
+  private void requestRefill()
+  {
+    if (reachableIdle() < refillLow_ && refilling_.compareAndSet(false, true))
+      PoolMaintenance.execute(this::refill);
+  }
+  
+  
+  private void refill()
+  {
+    boolean succeeded = false;
     try
     {
-      result = constructor_.newInstance(argumentList_);
+      int high = refillHigh_;
+      
+      int maxIdle = maxIdle_;
+      if (maxIdle > 0)
+        high = Math.min(high, maxIdle);
+      
+      allocate(high - getIdleSize());
+      succeeded = true;
     }
-    catch (InstantiationException e)
+    catch (PoolException e)
     {
-      throw new PoolException("Couldn't instantiate class, it might be abstract or an interface", e);
+      Debugger.error("Pool: refill()", "Failed to refill the pool", e);
     }
-    catch (IllegalAccessException e)
+    finally
     {
-      throw new PoolException("Constructor isn't visible!", e);
+      refilling_.set(false);
     }
-    catch (IllegalArgumentException e)
+    
+    // Acquires that happened during the refill may have drained the pool again
+    if (succeeded)
+      requestRefill();
+  }
+  
+  
+  private void trimStep()
+  {
+    int surplus = getIdleSize() - trimTarget_;
+    if (surplus > 0)
+      release((surplus + 1) / 2);
+  }
+  
+  
+  @SuppressWarnings("unchecked")
+  private void release(int amount)
+  {
+    if (amount <= 0)
+      return;
+    
+    E[] buffer = (E[]) new Poolable[Math.min(amount, 64)];
+    while (amount > 0)
     {
-      throw new PoolException("Parameters and argument list types doesn't match!", e);
+      int count = storage_.poll(buffer, 0, Math.min(amount, buffer.length));
+      if (count == 0)
+        break;
+      
+      metrics_.idle.add(-count);
+      discard(buffer, 0, count);
+      amount -= count;
+    }
+  }
+  
+  
+  /**
+   * Returns the amount of idle elements the calling thread can acquire. In the
+   *  THREAD_CACHED mode the elements in the magazines of other threads are
+   *  excluded, they may never be acquired again once those threads end.
+   */
+  private long reachableIdle()
+  {
+    ThreadCachedPoolStorage<E> threadCache = threadCache_;
+    return threadCache != null ? threadCache.reachableSize() : metrics_.idle.sum();
+  }
+  
+  
+  private void accept(E element)
+  {
+    int maxIdle = maxIdle_;
+    if (maxIdle <= 0 || reachableIdle() < maxIdle)
+    {
+      storage_.offer(element);
+      metrics_.idle.increment();
     }
-    catch (InvocationTargetException e)
+    else
     {
-      throw new PoolException("Exception occurred when invoking constructor!", e);
+      discard(element);
     }
+  }
+  
+  
+  private void accept(E[] elements, int offset, int amount)
+  {
+    int accepted = amount;
+    
+    int maxIdle = maxIdle_;
+    if (maxIdle > 0)
+      accepted = (int) Math.max(0, Math.min(amount, maxIdle - reachableIdle()));
+    
+    if (accepted > 0)
+    {
+      storage_.offer(elements, offset, accepted);
+      metrics_.idle.add(accepted);
+    }
+    
+    discard(elements, offset + accepted, amount - accepted);
+  }
+  
+  
+  /**
+   * Resets the specified element and returns whether it is still valid. An
+   *  element that fails to reset is reported and treated as invalid.
+   */
+  private static boolean reset(Poolable element)
+  {
+    try
+    {
+      element.reset();
+      return element.validate();
+    }
+    catch (RuntimeException e)
+    {
+      Debugger.error("Pool: reset()", "Failed to reset a pooled element", e);
+      return false;
+    }
+  }
+  
+  
+  private void requestReset()
+  {
+    if (!resetting_.get() && resetting_.compareAndSet(false, true))
+      PoolMaintenance.execute(this::resetPending);
+  }
+  
+  
+  @SuppressWarnings("unchecked")
+  private void resetPending()
+  {
+    E[] buffer = (E[]) new Poolable[64];
+    try
+    {
+      int count = pendingReset_.poll(buffer, 0, buffer.length);
+      while (count > 0)
+      {
+        pending_.add(-count);
+        
+        int valid = 0;
+        for (int i = 0; i < count; i++)
+        {
+          E element = buffer[i];
+          buffer[i] = null;
+          
+          if (reset(element))
+            buffer[valid++] = element;
+        }
+        
+        // Offered in a batch so the elements end up in the shared storage,
+        //  not in the thread cache of the maintenance thread
+        accept(buffer, 0, valid);
+        metrics_.discarded.add(count - valid);
+        
+        for (int i = 0; i < valid; i++)
+          buffer[i] = null;
+        
+        count = pendingReset_.poll(buffer, 0, buffer.length);
+      }
+    }
+    finally
+    {
+      resetting_.set(false);
+    }
+    
+    // Elements stored during the last poll may not have requested a reset
+    if (pending_.sum() > 0)
+      requestReset();
+  }
+  
+  
+  private E pollPendingReset()
+  {
+    while (pending_.sum() > 0)
+    {
+      E element = pendingReset_.poll();
+      if (element == null)
+        return null;
+      
+      pending_.decrement();
+      
+      element.reset();
+      if (element.validate())
+        return element;
+      
+      metrics_.discarded.increment();
+    }
+    
+    return null;
+  }
+  
+  
+  private int pollPendingReset(E[] destination, int offset, int amount)
+  {
+    if (pending_.sum() <= 0)
+      return 0;
+    
+    int count = pendingReset_.poll(destination, offset, amount);
+    pending_.add(-count);
+    
+    int valid = 0;
+    for (int i = offset; i < offset + count; i++)
+    {
+      E element = destination[i];
+      destination[i] = null;
+      
+      element.reset();
+      if (element.validate())
+        destination[offset + valid++] = element;
+      else
+        metrics_.discarded.increment();
+    }
+    
+    return valid;
+  }
+  
+  
+  private E pollSoftTier()
+  {
+    SoftPoolStorage<E> softTier = softTier_;
+    return softTier == null ? null : softTier.poll();
+  }
+  
+  
+  private void discard(E element)
+  {
+    SoftPoolStorage<E> softTier = softTier_;
+    if (softTier != null)
+      softTier.offer(element);
+    else
+      metrics_.discarded.increment();
+  }
+  
+  
+  private void discard(E[] elements, int offset, int amount)
+  {
+    if (amount <= 0)
+      return;
+    
+    SoftPoolStorage<E> softTier = softTier_;
+    if (softTier != null)
+      softTier.offer(elements, offset, amount);
+    else
+      metrics_.discarded.add(amount);
+  }
+  
+  
+  private E createInstance()
+  {
+    Supplier<? extends E> factory = factory_;
+    if (factory == null)
+      throw new PoolException("The argument list hasn't been set!");
+    
+    long start = System.nanoTime();
+    E result = factory.get();
+    metrics_.recordCreation(System.nanoTime() - start);
+    
+    if (result == null)
+      throw new PoolException("The factory returned null!");
     
     return result;
   }
   
   
-  private static class PoolNode<E extends Poolable>
+  /**
+   * A factory that invokes a constructor that has all its arguments bound.
+   */
+  private static class ConstructorFactory<E> implements Supplier<E>
   {
-    public PoolNode<E> next;
+    /**
+     * The constructor, of the type {@code ()Object}.
+     */
+    private final MethodHandle constructor_;
+    
+    public ConstructorFactory(MethodHandle constructor)
+    {
+      constructor_ = constructor;
+    }
     
-    public E element;
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get()
+    {
+      try
+      {
+        return (E) (Object) constructor_.invokeExact();
+      }
+      catch (InstantiationException e)
+      {
+        throw new PoolException("Couldn't instantiate class, it might be abstract or an interface", e);
+      }
+      catch (Error e)
+      {
+        // Errors such as OutOfMemoryError aren't failures of the constructor
+        throw e;
+      }
+      catch (Throwable e)
+      {
+        throw new PoolException("Exception occurred when invoking constructor!", e);
+      }
+    }
   }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.Arrays;
+
+/**
+ * A scope that keeps track of elements acquired from one or more pools, and
+ *  stores all of them back in their pools when it is closed. The elements of
+ *  each pool are stored with a single call to {@link Pool#storeAll(Poolable[], int)}.
+ *  The arena is meant to be used with try-with-resources, for example once per
+ *  frame:
+ * <pre>
+ * try (frameArena)
+ * {
+ *   Point a = frameArena.acquire(pointPool);
+ *   Point b = frameArena.acquire(pointPool);
+ *   ...
+ * }
+ * </pre>
+ * None of the acquired elements may be used once the arena is closed, and they
+ *  must not be stored manually. The arena can be reused after it is closed.
+ * </br>
+ * </br>This class isn't thread safe, an arena should only be used by one thread
+ *  at a time.
+ * @author Sebastian Hjelm
+ */
+public class PoolArena implements AutoCloseable
+{
+  private Pool<?>[]   pools_;
+  private Poolable[]  elements_;
+  private int size_;
+  
+  private Poolable[] batch_;
+  
+  
+  /**
+   * Creates a new empty arena.
+   */
+  public PoolArena()
+  {
+    pools_    = new Pool<?>[16];
+    elements_ = new Poolable[16];
+    batch_    = new Poolable[16];
+  }
+  
+  
+  /**
+   * Acquires an element from the specified pool, the element is stored back
+   *  in the pool when this arena is closed.
+   * @param pool The pool to acquire the element from
+   * @return The acquired element
+   * @throws PoolException If the pool failed to create a new instance
+   * @see Pool#acquire()
+   */
+  public <E extends Poolable> E acquire(Pool<E> pool)
+  {
+    E element = pool.acquire();
+    
+    ensureCapacity(size_ + 1);
+    pools_[size_]    = pool;
+    elements_[size_] = element;
+    size_++;
+    
+    return element;
+  }
+  
+  
+  /**
+   * Acquires the specified amount of elements from the specified pool, the
+   *  elements are stored back in the pool when this arena is closed.
+   * @param pool The pool to acquire the elements from
+   * @param destination The array to put the acquired elements in
+   * @param amount The amount of elements to acquire
+   * @throws PoolException If the pool failed to create new instances
+   * @see Pool#acquireAll(Poolable[], int)
+   */
+  public <E extends Poolable> void acquireAll(Pool<E> pool, E[] destination, int amount)
+  {
+    pool.acquireAll(destination, amount);
+    
+    ensureCapacity(size_ + amount);
+    Arrays.fill(pools_, size_, size_ + amount, pool);
+    System.arraycopy(destination, 0, elements_, size_, amount);
+    size_ += amount;
+  }
+  
+  
+  /**
+   * Returns the amount of elements that are currently acquired through this arena.
+   * @return The amount of elements
+   */
+  public int size()
+  {
+    return size_;
+  }
+  
+  
+  /**
+   * Stores all elements acquired through this arena back in their pools. The
+   *  elements of each pool are stored in one batch.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public void close()
+  {
+    try
+    {
+      for (int i = 0; i < size_; i++)
+      {
+        Pool<?> pool = pools_[i];
+        if (pool == null)
+          continue;
+        
+        int count = 0;
+        for (int j = i; j < size_; j++)
+        {
+          if (pools_[j] == pool)
+          {
+            if (count == batch_.length)
+              batch_ = Arrays.copyOf(batch_, count * 2);
+            
+            batch_[count++] = elements_[j];
+            pools_[j] = null;
+          }
+        }
+        
+        ((Pool<Poolable>) pool).storeAll(batch_, count);
+        Arrays.fill(batch_, 0, count, null);
+      }
+    }
+    finally
+    {
+      Arrays.fill(pools_, 0, size_, null);
+      Arrays.fill(elements_, 0, size_, null);
+      size_ = 0;
+    }
+  }
+  
+  
+  private void ensureCapacity(int capacity)
+  {
+    if (capacity > elements_.length)
+    {
+      int newCapacity = Math.max(capacity, elements_.length * 2);
+      
+      pools_    = Arrays.copyOf(pools_, newCapacity);
+      elements_ = Arrays.copyOf(elements_, newCapacity);
+    }
+  }
+}
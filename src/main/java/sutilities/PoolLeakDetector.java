@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects pooled elements that are garbage collected without being returned
+ *  to their pool. One in every N acquired elements is tracked: the stack trace
+ *  of the acquire is recorded together with a weak reference to the element.
+ *  If the weak reference is cleared before the element is stored the element
+ *  has leaked, and a warning is reported through {@link Debugger#warning(String, String, Throwable)}
+ *  with the recorded stack trace as the cause.
+ * </br>
+ * </br>Elements that aren't sampled only cost a random number when they are
+ *  acquired, and a map lookup when they are stored while there are tracked
+ *  elements outstanding.
+ * @author Sebastian Hjelm
+ */
+class PoolLeakDetector
+{
+  private int sampleInterval_;
+  private LongAdder leaked_;
+  
+  private ConcurrentHashMap<Integer, LeakRecord> records_;
+  private ReferenceQueue<Object> queue_;
+  
+  
+  /**
+   * Creates a new leak detector.
+   * @param sampleInterval How many elements to acquire for every tracked element
+   * @param leaked The counter to increment when a leak is detected
+   */
+  public PoolLeakDetector(int sampleInterval, LongAdder leaked)
+  {
+    sampleInterval_ = Math.max(1, sampleInterval);
+    leaked_ = leaked;
+    
+    records_ = new ConcurrentHashMap<Integer, LeakRecord>();
+    queue_   = new ReferenceQueue<Object>();
+  }
+  
+  
+  /**
+   * Called when an element is acquired, starts tracking the element if it is
+   *  sampled.
+   * @param element The acquired element
+   */
+  public void acquired(Object element)
+  {
+    if (sampleInterval_ > 1 && ThreadLocalRandom.current().nextInt(sampleInterval_) != 0)
+      return;
+    
+    Integer key = System.identityHashCode(element);
+    
+    // If another element with the same identity hash is tracked this one is
+    //  simply not sampled
+    if (!records_.containsKey(key))
+      records_.putIfAbsent(key, new LeakRecord(key, element, queue_));
+    
+    expunge();
+  }
+  
+  
+  /**
+   * Called when an element is stored, stops tracking the element if it was
+   *  tracked.
+   * @param element The stored element
+   */
+  public void stored(Object element)
+  {
+    if (records_.isEmpty())
+      return;
+    
+    Integer key = System.identityHashCode(element);
+    
+    LeakRecord record = records_.get(key);
+    if (record != null && record.get() == element && records_.remove(key, record))
+      record.clear();
+  }
+  
+  
+  /**
+   * Reports all tracked elements that have been garbage collected since the
+   *  last time this method was invoked.
+   */
+  public void expunge()
+  {
+    LeakRecord record = (LeakRecord) queue_.poll();
+    while (record != null)
+    {
+      if (records_.remove(record.key, record))
+      {
+        leaked_.increment();
+        Debugger.warning("Pool: acquire()", "A pooled " + record.type +
+            " was garbage collected without being stored, it was acquired at:", record.acquiredAt);
+      }
+      
+      record = (LeakRecord) queue_.poll();
+    }
+  }
+  
+  
+  private static class LeakRecord extends WeakReference<Object>
+  {
+    public final Integer key;
+    public final String type;
+    public final Throwable acquiredAt;
+    
+    public LeakRecord(Integer key, Object element, ReferenceQueue<Object> queue)
+    {
+      super(element, queue);
+      
+      this.key   = key;
+      this.type  = element.getClass().getName();
+      acquiredAt = new Throwable("Pooled element acquired");
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class runs the background maintenance of pools, for example trimming of
+ *  idle elements or refilling them. All pools share a single daemon thread that is started the
+ *  first time it is needed.
+ * </br>
+ * </br>Scheduled tasks only keep weak references to the pools they maintain,
+ *  so a pool that is no longer used can still be garbage collected, its tasks
+ *  are cancelled once that happens.
+ * @author Sebastian Hjelm
+ */
+final class PoolMaintenance
+{
+  private static ScheduledThreadPoolExecutor executor_;
+  
+  private PoolMaintenance() { }
+  
+  
+  /**
+   * Schedules the specified task to run periodically for the specified owner.
+   *  The task must not keep a strong reference to the owner itself, it is
+   *  passed the owner every time it is run instead.
+   * @param owner The object that is maintained by the task
+   * @param task The task to run
+   * @param period The time between two runs of the task
+   * @param unit The unit of the period
+   * @return The future of the task, which can be used to cancel it
+   */
+  public static <T> ScheduledFuture<?> schedule(T owner, Consumer<? super T> task, long period, TimeUnit unit)
+  {
+    WeakTask<T> weakTask = new WeakTask<T>(owner, task);
+    
+    synchronized (weakTask)
+    {
+      weakTask.future = executor().scheduleAtFixedRate(weakTask, period, period, unit);
+      return weakTask.future;
+    }
+  }
+  
+  
+  /**
+   * Runs the specified task once, as soon as possible.
+   * @param task The task to run
+   */
+  public static void execute(Runnable task)
+  {
+    executor().execute(task);
+  }
+  
+  
+  private static synchronized ScheduledThreadPoolExecutor executor()
+  {
+    if (executor_ == null)
+    {
+      executor_ = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "Pool maintenance");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor_.setRemoveOnCancelPolicy(true);
+    }
+    
+    return executor_;
+  }
+  
+  
+  private static class WeakTask<T> implements Runnable
+  {
+    private WeakReference<T> owner_;
+    private Consumer<? super T> task_;
+    
+    public ScheduledFuture<?> future;
+    
+    public WeakTask(T owner, Consumer<? super T> task)
+    {
+      owner_ = new WeakReference<T>(owner);
+      task_  = task;
+    }
+    
+    @Override
+    public void run()
+    {
+      T owner = owner_.get();
+      if (owner == null)
+      {
+        synchronized (this)
+        {
+          future.cancel(false);
+        }
+        return;
+      }
+      
+      try
+      {
+        task_.accept(owner);
+      }
+      catch (RuntimeException e)
+      {
+        Debugger.error("PoolMaintenance: run()", "Pool maintenance task failed", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of a pool. All counters are striped ({@link LongAdder}) so
+ *  updating them never blocks and rarely contends, even when many threads use
+ *  the same pool. Use {@link #snapshot()} to read them.
+ * @author Sebastian Hjelm
+ */
+class PoolMetrics
+{
+  /**
+   * The amount of buckets in the creation time histogram, the last bucket
+   *  holds everything that took 2^(BUCKETS-1) nanoseconds or more.
+   */
+  static final int BUCKETS = 40;
+  
+  public final LongAdder acquired;
+  public final LongAdder hits;
+  public final LongAdder stored;
+  public final LongAdder discarded;
+  public final LongAdder idle;
+  public final LongAdder leaked;
+  
+  public final LongAdder waited;
+  public final LongAdder waitTime;
+  public final LongAdder timedOut;
+  
+  public final LongAdder created;
+  public final LongAdder creationTime;
+  
+  private LongAccumulator peakOutstanding_;
+  private AtomicLongArray creationTimeHistogram_;
+  
+  
+  public PoolMetrics()
+  {
+    acquired  = new LongAdder();
+    hits      = new LongAdder();
+    stored    = new LongAdder();
+    discarded = new LongAdder();
+    idle      = new LongAdder();
+    leaked    = new LongAdder();
+    
+    waited   = new LongAdder();
+    waitTime = new LongAdder();
+    timedOut = new LongAdder();
+    
+    created      = new LongAdder();
+    creationTime = new LongAdder();
+    
+    peakOutstanding_       = new LongAccumulator(Math::max, 0);
+    creationTimeHistogram_ = new AtomicLongArray(BUCKETS);
+  }
+  
+  
+  /**
+   * Returns the amount of elements that have been acquired but not stored.
+   * @return The balance
+   */
+  public long balance()
+  {
+    return acquired.sum() - stored.sum();
+  }
+  
+  
+  /**
+   * Records that an instance was created, which took the specified time.
+   * @param nanos The time it took to create the instance, in nanoseconds
+   */
+  public void recordCreation(long nanos)
+  {
+    created.increment();
+    creationTime.add(nanos);
+    
+    int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, nanos));
+    creationTimeHistogram_.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+  }
+  
+  
+  /**
+   * Records that elements were acquired, after the acquired counter has been
+   *  updated, so the peak amount of outstanding elements includes the new
+   *  balance. This is done for every acquire, hits included, since the peak is
+   *  what a prefilled pool has to be sized for.
+   */
+  public void recordAcquire()
+  {
+    peakOutstanding_.accumulate(balance());
+  }
+  
+  
+  /**
+   * Returns a snapshot of the counters. The counters are read one at a time
+   *  without blocking, so updates made meanwhile may be partially included.
+   * @return The snapshot
+   */
+  public PoolStatistics snapshot()
+  {
+    long[] histogram = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++)
+      histogram[i] = creationTimeHistogram_.get(i);
+    
+    return new PoolStatistics(
+        acquired.sum(),
+        hits.sum(),
+        stored.sum(),
+        discarded.sum(),
+        idle.sum(),
+        peakOutstanding_.get(),
+        created.sum(),
+        creationTime.sum(),
+        histogram,
+        leaked.sum(),
+        waited.sum(),
+        waitTime.sum(),
+        timedOut.sum());
+  }
+}
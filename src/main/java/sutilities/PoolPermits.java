@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * The permits that limit the amount of outstanding elements of a pool. This
+ *  is a fair {@link Semaphore} where the amount of permits can be reduced as
+ *  well as increased, so the limit can be changed while elements are outstanding.
+ * @author Sebastian Hjelm
+ */
+class PoolPermits extends Semaphore
+{
+  private static final long serialVersionUID = -4265473196424330873L;
+
+  
+  /**
+   * Creates new fair permits.
+   * @param permits The initial amount of permits, may be negative
+   */
+  public PoolPermits(int permits)
+  {
+    super (permits, true);
+  }
+  
+  
+  @Override
+  public void reducePermits(int reduction)
+  {
+    super.reducePermits(reduction);
+  }
+}
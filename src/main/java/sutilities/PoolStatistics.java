@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+/**
+ * An immutable snapshot of the counters of a pool, as returned by
+ *  {@link Pool#getStatistics()}. The counters are cumulative since the pool was
+ *  created.
+ * </br>
+ * </br>The peak outstanding count is useful when sizing the prefill of a pool
+ *  (see {@link Pool#allocate(int)}): allocating that many elements up front
+ *  would have avoided all the misses so far.
+ * @author Sebastian Hjelm
+ */
+public final class PoolStatistics
+{
+  private long acquireCount_;
+  private long hitCount_;
+  private long storeCount_;
+  private long discardCount_;
+  private long idleSize_;
+  private long peakOutstanding_;
+  
+  private long createCount_;
+  private long creationTime_;
+  private long[] creationTimeHistogram_;
+  
+  private long leakCount_;
+  
+  private long waitCount_;
+  private long waitTime_;
+  private long timeoutCount_;
+  
+  
+  PoolStatistics(long acquireCount, long hitCount, long storeCount, long discardCount,
+      long idleSize, long peakOutstanding, long createCount, long creationTime,
+      long[] creationTimeHistogram, long leakCount, long waitCount, long waitTime,
+      long timeoutCount)
+  {
+    acquireCount_    = acquireCount;
+    hitCount_        = hitCount;
+    storeCount_      = storeCount;
+    discardCount_    = discardCount;
+    idleSize_        = idleSize;
+    peakOutstanding_ = peakOutstanding;
+    
+    createCount_           = createCount;
+    creationTime_          = creationTime;
+    creationTimeHistogram_ = creationTimeHistogram;
+    
+    leakCount_ = leakCount;
+    
+    waitCount_    = waitCount;
+    waitTime_     = waitTime;
+    timeoutCount_ = timeoutCount;
+  }
+  
+  
+  /**
+   * Returns the amount of elements that have been acquired.
+   * @return The amount of acquired elements
+   */
+  public long getAcquireCount()
+  {
+    return acquireCount_;
+  }
+  
+  /**
+   * Returns the amount of acquired elements that were taken from the idle
+   *  elements of the pool.
+   * @return The amount of hits
+   */
+  public long getHitCount()
+  {
+    return hitCount_;
+  }
+  
+  /**
+   * Returns the amount of acquired elements that had to be created because
+   *  the pool was empty.
+   * @return The amount of misses
+   */
+  public long getMissCount()
+  {
+    return acquireCount_ - hitCount_;
+  }
+  
+  /**
+   * Returns the ratio of acquired elements that were hits, or 1 if nothing
+   *  has been acquired.
+   * @return The hit ratio, between 0 and 1
+   */
+  public double getHitRatio()
+  {
+    return acquireCount_ == 0 ? 1 : hitCount_ / (double) acquireCount_;
+  }
+  
+  /**
+   * Returns the amount of elements that have been stored, including elements
+   *  that were discarded because the pool was full.
+   * @return The amount of stored elements
+   */
+  public long getStoreCount()
+  {
+    return storeCount_;
+  }
+  
+  /**
+   * Returns the amount of elements that the pool has let go of, either because
+   *  they were stored when the pool was full or because they were trimmed.
+   *  Elements moved to the soft tier of a pool aren't included, see
+   *  {@link Pool#setSoftRetention(boolean)}.
+   * @return The amount of discarded elements
+   */
+  public long getDiscardCount()
+  {
+    return discardCount_;
+  }
+  
+  /**
+   * Returns the amount of idle elements in the pool.
+   * @return The idle size
+   */
+  public long getIdleSize()
+  {
+    return idleSize_;
+  }
+  
+  /**
+   * Returns the balance of the pool, see {@link Pool#getBalance()}.
+   * @return The balance
+   */
+  public long getBalance()
+  {
+    return acquireCount_ - storeCount_;
+  }
+  
+  /**
+   * Returns the highest balance the pool has had, that is the largest amount
+   *  of elements that have been outstanding at the same time. A pool that is
+   *  prefilled with at least this many elements never has to create instances
+   *  for the same load.
+   * @return The peak amount of outstanding elements
+   */
+  public long getPeakOutstanding()
+  {
+    return peakOutstanding_;
+  }
+  
+  /**
+   * Returns the amount of instances the pool has created, this includes both
+   *  misses and instances created to prefill the pool.
+   * @return The amount of created instances
+   */
+  public long getCreateCount()
+  {
+    return createCount_;
+  }
+  
+  /**
+   * Returns the total time spent creating instances.
+   * @return The total creation time, in nanoseconds
+   */
+  public long getCreationTime()
+  {
+    return creationTime_;
+  }
+  
+  /**
+   * Returns the average time it took to create an instance, or zero if no
+   *  instances have been created.
+   * @return The average creation time, in nanoseconds
+   */
+  public long getAverageCreationTime()
+  {
+    return createCount_ == 0 ? 0 : creationTime_ / createCount_;
+  }
+  
+  /**
+   * Returns a histogram of the times it took to create instances. Bucket
+   *  {@code i} counts the instances that took between 2^i (inclusive) and
+   *  2^(i+1) (exclusive) nanoseconds to create, the last bucket also counts
+   *  everything slower than that.
+   * @return A copy of the histogram
+   */
+  public long[] getCreationTimeHistogram()
+  {
+    return creationTimeHistogram_.clone();
+  }
+  
+  
+  /**
+   * Returns the amount of leaked elements that have been detected, see
+   *  {@link Pool#setLeakDetection(int)}. Since leaks are only detected for
+   *  sampled elements the real amount is roughly this times the sample interval.
+   * @return The amount of detected leaks
+   */
+  public long getLeakCount()
+  {
+    return leakCount_;
+  }
+  
+  
+  /**
+   * Returns the amount of acquires that had to wait because the maximum amount
+   *  of outstanding elements was reached, see {@link Pool#setMaxOutstanding(int)}.
+   * @return The amount of acquires that waited
+   */
+  public long getWaitCount()
+  {
+    return waitCount_;
+  }
+  
+  /**
+   * Returns the total time acquires have spent waiting for elements to be
+   *  stored, including acquires that timed out.
+   * @return The total wait time, in nanoseconds
+   */
+  public long getWaitTime()
+  {
+    return waitTime_;
+  }
+  
+  /**
+   * Returns the average time an acquire that had to wait spent waiting, or
+   *  zero if no acquire had to wait.
+   * @return The average wait time, in nanoseconds
+   */
+  public long getAverageWaitTime()
+  {
+    return waitCount_ == 0 ? 0 : waitTime_ / waitCount_;
+  }
+  
+  /**
+   * Returns the amount of acquires that timed out before an element was stored.
+   * @return The amount of timeouts
+   */
+  public long getTimeoutCount()
+  {
+    return timeoutCount_;
+  }
+  
+  
+  @Override
+  public String toString()
+  {
+    return "[acquired=" + acquireCount_ + ",hits=" + hitCount_ + ",misses=" + getMissCount() +
+        ",stored=" + storeCount_ + ",discarded=" + discardCount_ + ",idle=" + idleSize_ +
+        ",peakOutstanding=" + peakOutstanding_ + ",created=" + createCount_ +
+        ",averageCreationTime=" + getAverageCreationTime() + "ns,leaks=" + leakCount_ +
+        ",waits=" + waitCount_ + ",averageWaitTime=" + getAverageWaitTime() + "ns,timeouts=" + timeoutCount_ + "]";
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+/**
+ * Describes the list of idle elements held by a {@link Pool}. The storage only
+ *  keeps track of the elements, it never creates any on its own.
+ * @author Sebastian Hjelm
+ *
+ * @param <E> The type of elements in the storage
+ */
+interface PoolStorage<E>
+{
+  /**
+   * Removes and returns an element from the storage.
+   * @return An element, or <code>null</code> if the storage is empty
+   */
+  E poll();
+  
+  /**
+   * Adds the specified element to the storage.
+   * @param element The element to add, never <code>null</code>
+   */
+  void offer(E element);
+  
+  /**
+   * Removes up to the specified amount of elements from the storage and puts
+   *  them in the specified array, starting at the specified offset.
+   * @param destination The array to put the elements in
+   * @param offset The index of the first element to write
+   * @param amount The maximum amount of elements to remove
+   * @return The amount of elements that were removed
+   */
+  int poll(E[] destination, int offset, int amount);
+  
+  /**
+   * Adds the specified range of elements to the storage.
+   * @param elements The array that contains the elements to add
+   * @param offset The index of the first element to add
+   * @param amount The amount of elements to add, none of them may be
+   *  <code>null</code>
+   */
+  void offer(E[] elements, int offset, int amount);
+}
@@ -12,9 +12,31 @@ package sutilities;
 /**
  * An interface that specifies that the implementing class may be stored in a
  *  {@link Pool}.
+ * </br>
+ * </br>The methods of this interface are only invoked by pools that reset their
+ *  elements, see {@link Pool#setResetMode(Pool.ResetMode)}. By default they do
+ *  nothing.
  * @author Sebastian Hjelm
  * @see Pool
  */
 public interface Poolable {
   
+  /**
+   * Resets this object to the state of a newly created instance. This is
+   *  invoked after the object has been stored, before it is acquired again.
+   */
+  default void reset()
+  {
+  }
+  
+  /**
+   * Returns whether or not this object can be reused. This is invoked after
+   *  the object has been reset, if it returns false the object is discarded
+   *  by the pool instead of being acquired again.
+   * @return True if the object can be reused, false otherwise
+   */
+  default boolean validate()
+  {
+    return true;
+  }
 }
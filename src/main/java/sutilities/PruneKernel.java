@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+/**
+ * Selects the pruning kernel used by the hull algorithms. This version always
+ *  uses the scalar kernel, on Java 17 and later the multi-release jar replaces
+ *  this class with one that uses the Vector API when it is available.
+ * @author Sebastian Hjelm
+ */
+final class PruneKernel
+{
+  /**
+   * The kernel to use.
+   */
+  static final ScalarPruneKernel INSTANCE = new ScalarPruneKernel();
+  
+  
+  private PruneKernel()
+  {
+  }
+}
@@ -10,9 +10,11 @@
 package sutilities;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
 
 public final class QuickHull
 {
@@ -21,6 +23,138 @@ public final class QuickHull
   }
   
   
+  /**
+   * Computes the convex hull of the specified points and returns the indices
+   *  of the hull points, see {@link #computeIndices(PointBuffer, HullWorkspace)}.
+   *  This method allocates a new workspace, use the other method to avoid that
+   *  when computing many hulls.
+   * @param points The points
+   * @return The indices of the hull points
+   */
+  public static int[] computeIndices(PointBuffer points)
+  {
+    HullWorkspace workspace = new HullWorkspace(points.size());
+    int size = computeIndices(points, workspace);
+    
+    return Arrays.copyOf(workspace.getHull(), size);
+  }
+  
+  
+  /**
+   * Computes the convex hull of the specified points. The indices of the hull
+   *  points are put in the hull array of the workspace ({@link HullWorkspace#getHull()}),
+   *  starting with the point with the lowest x coordinate and proceeding in
+   *  clockwise order when the y axis points up. Points on the edges of the hull
+   *  are excluded, as are duplicates.
+   * </br>
+   * </br>This method works on the coordinate arrays directly and only uses the
+   *  scratch memory of the workspace, so once the workspace is large enough
+   *  nothing is allocated.
+   * @param points The points
+   * @param workspace The workspace to use
+   * @return The amount of hull points
+   */
+  public static int computeIndices(PointBuffer points, HullWorkspace workspace)
+  {
+    return computeIndices(points.getXs(), points.getYs(), 0, points.size(), workspace);
+  }
+  
+  
+  /**
+   * Computes the convex hull of the specified points like
+   *  {@link #computeIndices(PointBuffer, HullWorkspace)}, but splits the work
+   *  over the threads of the common fork/join pool. This is only worthwhile for
+   *  large inputs (hundreds of thousands of points), smaller inputs are
+   *  computed sequentially.
+   * @param points The points
+   * @param workspace The workspace to use
+   * @return The amount of hull points
+   */
+  public static int computeIndicesParallel(PointBuffer points, HullWorkspace workspace)
+  {
+    return computeIndicesParallel(points, workspace, ForkJoinPool.commonPool());
+  }
+  
+  
+  /**
+   * Computes the convex hull of the specified points like
+   *  {@link #computeIndices(PointBuffer, HullWorkspace)}, but splits the work
+   *  over the threads of the specified fork/join pool. The result is the same
+   *  as for the sequential version.
+   * @param points The points
+   * @param workspace The workspace to use
+   * @param pool The pool to run the computation in
+   * @return The amount of hull points
+   */
+  public static int computeIndicesParallel(PointBuffer points, HullWorkspace workspace, ForkJoinPool pool)
+  {
+    return ParallelQuickHull.computeIndices(points.getXs(), points.getYs(), 0, points.size(), workspace, pool);
+  }
+  
+  
+  /**
+   * Computes the convex hull of the specified range of points, see
+   *  {@link #computeIndices(PointBuffer, HullWorkspace)}. The hull indices are
+   *  indices into the coordinate arrays (not relative to the offset).
+   * @param xs The x coordinates
+   * @param ys The y coordinates
+   * @param offset The index of the first point
+   * @param count The amount of points
+   * @param workspace The workspace to use
+   * @return The amount of hull points
+   */
+  static int computeIndices(float[] xs, float[] ys, int offset, int count, HullWorkspace workspace)
+  {
+    if (count <= 0)
+      return 0;
+    
+    workspace.ensureCapacity(count);
+    
+    int n = prune(xs, ys, offset, count, workspace.candidates);
+    return computeCandidates(xs, ys, n, workspace);
+  }
+  
+  
+  /**
+   * Computes the convex hull of the first n candidates of the workspace, the
+   *  result is put in the hull array of the workspace.
+   */
+  static int computeCandidates(float[] xs, float[] ys, int n, HullWorkspace workspace)
+  {
+    int[] candidates = workspace.candidates;
+    int[] hull       = workspace.hull;
+    
+    int min = candidates[0];
+    int max = candidates[0];
+    for (int i = 1; i < n; i++)
+    {
+      int c = candidates[i];
+      
+      if (xs[c] < xs[min] || (xs[c] == xs[min] && ys[c] < ys[min]))
+        min = c;
+      if (xs[c] > xs[max] || (xs[c] == xs[max] && ys[c] > ys[max]))
+        max = c;
+    }
+    
+    hull[0] = min;
+    if (xs[min] == xs[max] && ys[min] == ys[max])
+      return 1;
+    
+    // Points above the line go to the front, points below to the back and
+    //  points on the line are dropped
+    long split = partition(xs, ys, min, max, min, candidates, 0, n);
+    int upper = (int) (split >>> 32);
+    int lower = (int) split;
+    
+    int size = 1;
+    size = computeChain(xs, ys, min, max, candidates, 0, upper, hull, size, workspace);
+    hull[size++] = max;
+    size = computeChain(xs, ys, max, min, candidates, lower, n, hull, size, workspace);
+    
+    return size;
+  }
+  
+  
   public static List<Point> compute(Point[] points)
   {
     List<Point> pruned = prune(points);
@@ -195,6 +329,162 @@ public final class QuickHull
   }
   
   
+  /**
+   * Appends the hull points between A and B to the hull array, given that the
+   *  candidates in the specified range are the points to the left of the line
+   *  from A to B. Uses an explicit stack (from the workspace) since the
+   *  recursion can be as deep as the amount of points.
+   */
+  static int computeChain(float[] xs, float[] ys, int A, int B, int[] candidates, int from, int to, int[] hull, int size, HullWorkspace workspace)
+  {
+    int[] stack = workspace.stack;
+    
+    stack[0] = A;
+    stack[1] = B;
+    stack[2] = from;
+    stack[3] = to;
+    int top = 4;
+    
+    while (top > 0)
+    {
+      top -= 4;
+      int a = stack[top];
+      int b = stack[top + 1];
+      int start = stack[top + 2];
+      int end   = stack[top + 3];
+      
+      // A negative range marks a point to emit
+      if (start < 0)
+      {
+        hull[size++] = a;
+        continue;
+      }
+      if (start == end)
+        continue;
+      
+      int furthest = getFurthest(xs, ys, a, b, candidates, start, end);
+      long split = partition(xs, ys, a, furthest, b, candidates, start, end);
+      int left  = (int) (split >>> 32);
+      int right = (int) split;
+      
+      workspace.ensureStackCapacity(top + 12);
+      stack = workspace.stack;
+      
+      stack[top++] = furthest;
+      stack[top++] = b;
+      stack[top++] = right;
+      stack[top++] = end;
+      
+      stack[top++] = furthest;
+      stack[top++] = -1;
+      stack[top++] = -1;
+      stack[top++] = -1;
+      
+      stack[top++] = a;
+      stack[top++] = furthest;
+      stack[top++] = start;
+      stack[top++] = left;
+    }
+    
+    return size;
+  }
+  
+  
+  /**
+   * Returns the candidate in the specified range that is furthest to the left
+   *  of the line from A to B. Of several equally distant candidates the one
+   *  closest to A is returned, since the ones in between are not on the hull.
+   */
+  static int getFurthest(float[] xs, float[] ys, int A, int B, int[] candidates, int from, int to)
+  {
+    int furthest = candidates[from];
+    double distance = cross(xs, ys, A, B, furthest);
+    for (int i = from + 1; i < to; i++)
+    {
+      int c = candidates[i];
+      double dst = cross(xs, ys, A, B, c);
+      if (dst > distance || (dst == distance && dot(xs, ys, A, B, c) < dot(xs, ys, A, B, furthest)))
+      {
+        distance = dst;
+        furthest = c;
+      }
+    }
+    
+    return furthest;
+  }
+  
+  
+  /**
+   * Partitions the candidates in the specified range in three parts: the
+   *  points to the left of the line from A to M first, the points to the left
+   *  of the line from M to B last and the rest (which can't be on the hull) in
+   *  the middle. Returns the end of the first part in the high 32 bits and the
+   *  start of the last part in the low 32 bits.
+   */
+  static long partition(float[] xs, float[] ys, int A, int M, int B, int[] candidates, int from, int to)
+  {
+    int left  = from;
+    int right = to;
+    int i = from;
+    while (i < right)
+    {
+      int c = candidates[i];
+      
+      if (cross(xs, ys, A, M, c) > 0)
+      {
+        candidates[i++]    = candidates[left];
+        candidates[left++] = c;
+      }
+      else if (cross(xs, ys, M, B, c) > 0)
+      {
+        candidates[i]       = candidates[--right];
+        candidates[right]   = c;
+      }
+      else
+      {
+        i++;
+      }
+    }
+    
+    return ((long) left << 32) | right;
+  }
+  
+  
+  /**
+   * Puts the indices of the points that may be on the hull in the specified
+   *  array and returns how many there are, see {@link ScalarPruneKernel}.
+   */
+  static int prune(float[] xs, float[] ys, int offset, int count, int[] result)
+  {
+    return PruneKernel.INSTANCE.prune(xs, ys, offset, count, result);
+  }
+  
+  
+  /**
+   * Returns twice the signed area of the triangle ABM, which is positive if M
+   *  is to the left of the line from A to B.
+   */
+  static double cross(float[] xs, float[] ys, int A, int B, int M)
+  {
+    double ax = xs[A];
+    double ay = ys[A];
+    
+    return (xs[B] - ax) * (ys[M] - ay) - (ys[B] - ay) * (xs[M] - ax);
+  }
+  
+  
+  /**
+   * Returns the dot product of the vectors from A to B and from A to M.
+   */
+  private static double dot(float[] xs, float[] ys, int A, int B, int M)
+  {
+    double ax = xs[A];
+    double ay = ys[A];
+    
+    return (xs[B] - ax) * (xs[M] - ax) + (ys[B] - ay) * (ys[M] - ay);
+  }
+  
+  
   private static double getPosition(Point A, Point B, Point M)
   {
     double cross = (B.getY() - A.getY()) * (M.getX() - A.getX()) - (B.getX() - A.getX()) * (M.getY() - A.getY());
@@ -0,0 +1,566 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.Arrays;
+
+/**
+ * Computes convex hulls of 3D points with the QuickHull algorithm. The hull is
+ *  returned as triangles of point indices, wound counter-clockwise when seen
+ *  from outside the hull (so the normals given by the right hand rule point
+ *  outwards).
+ * </br>
+ * </br>The hull is stored as a half-edge mesh of triangles. Every face keeps a
+ *  list of the points outside of it (its conflict list). The point furthest
+ *  from a face is added to the hull by removing all faces it can see and
+ *  connecting it to the horizon (the edges between the visible and the hidden
+ *  faces), after which the points of the removed faces are distributed to the
+ *  new faces. Points within a small tolerance of a face are considered to be
+ *  inside it, so coplanar faces are not merged, they are split in triangles.
+ * </br>
+ * </br>All the memory used during the computation is kept by the instance and
+ *  reused by the next computation. An instance may only be used by one thread
+ *  at a time.
+ * @author Sebastian Hjelm
+ */
+public class QuickHull3D
+{
+  private float[] xs_;
+  private float[] ys_;
+  private float[] zs_;
+  private double tolerance_;
+  
+  // Face f owns the half-edges 3f, 3f + 1 and 3f + 2, each edge stores the
+  //  vertex it points to and its twin on the neighbouring face
+  private int[] edgeHead_;
+  private int[] edgeTwin_;
+  
+  private double[] faceNormals_;
+  private boolean[] faceDeleted_;
+  private int[] faceConflicts_;
+  private int faceCount_;
+  
+  // The conflict lists are linked lists through this array
+  private int[] nextConflict_;
+  
+  private int[] pending_;
+  private int pendingSize_;
+  private int[] horizon_;
+  private int horizonSize_;
+  private int[] unclaimed_;
+  private int unclaimedSize_;
+  private int[] stack_;
+  
+  private int[] triangles_;
+  private int triangleCount_;
+  
+  // The indices of the extreme points along each axis
+  private final int[] min_;
+  private final int[] max_;
+  
+  
+  /**
+   * Creates a new hull computer.
+   */
+  public QuickHull3D()
+  {
+    edgeHead_ = new int[96];
+    edgeTwin_ = new int[96];
+    faceNormals_ = new double[128];
+    faceDeleted_ = new boolean[32];
+    faceConflicts_ = new int[32];
+    nextConflict_ = new int[64];
+    
+    pending_ = new int[32];
+    horizon_ = new int[32];
+    unclaimed_ = new int[64];
+    stack_ = new int[64];
+    triangles_ = new int[96];
+    
+    min_ = new int[3];
+    max_ = new int[3];
+  }
+  
+  
+  /**
+   * Computes the convex hull of the specified points and returns its
+   *  triangles, see {@link #compute(float[], float[], float[], int)}. This
+   *  method allocates a new instance, keep an instance to avoid that when
+   *  computing many hulls.
+   * @param xs The x coordinates
+   * @param ys The y coordinates
+   * @param zs The z coordinates
+   * @param count The amount of points
+   * @return The point indices of the triangles, three per triangle
+   */
+  public static int[] computeTriangles(float[] xs, float[] ys, float[] zs, int count)
+  {
+    QuickHull3D hull = new QuickHull3D();
+    int triangles = hull.compute(xs, ys, zs, count);
+    
+    return Arrays.copyOf(hull.getTriangles(), triangles * 3);
+  }
+  
+  
+  /**
+   * Computes the convex hull of the first count points of the specified
+   *  coordinate arrays. The triangles are available through
+   *  {@link #getTriangles()} afterwards. If the points don't span a volume
+   *  (they are all on the same plane) there is no hull and 0 is returned.
+   * @param xs The x coordinates
+   * @param ys The y coordinates
+   * @param zs The z coordinates
+   * @param count The amount of points
+   * @return The amount of triangles of the hull
+   * @throws IllegalArgumentException If any of the arrays are shorter than
+   *  the amount of points
+   */
+  public int compute(float[] xs, float[] ys, float[] zs, int count)
+  {
+    if (xs.length < count || ys.length < count || zs.length < count)
+      throw new IllegalArgumentException("The coordinate arrays are shorter than the amount of points: " + count);
+    
+    xs_ = xs;
+    ys_ = ys;
+    zs_ = zs;
+    faceCount_ = 0;
+    pendingSize_ = 0;
+    triangleCount_ = 0;
+    
+    if (count >= 4)
+    {
+      if (nextConflict_.length < count)
+        nextConflict_ = new int[count];
+      
+      if (createSimplex(count))
+      {
+        while (pendingSize_ > 0)
+        {
+          int face = pending_[--pendingSize_];
+          if (!faceDeleted_[face] && faceConflicts_[face] >= 0)
+            addPoint(face);
+        }
+        
+        collectTriangles();
+      }
+    }
+    
+    xs_ = null;
+    ys_ = null;
+    zs_ = null;
+    
+    return triangleCount_;
+  }
+  
+  
+  /**
+   * Returns the triangles of the last computed hull, as three point indices
+   *  per triangle. Only as many triangles as the computation returned are
+   *  valid, the array may be longer. The array is reused by the next
+   *  computation.
+   * @return The point indices of the triangles
+   */
+  public int[] getTriangles()
+  {
+    return triangles_;
+  }
+  
+  
+  /**
+   * Creates the initial tetrahedron from extreme points and assigns the rest
+   *  of the points to its faces. Returns false if the points are degenerate.
+   */
+  private boolean createSimplex(int count)
+  {
+    int[] min = min_;
+    int[] max = max_;
+    Arrays.fill(min, 0);
+    Arrays.fill(max, 0);
+    
+    double maxAbs = 0;
+    for (int i = 0; i < count; i++)
+    {
+      for (int axis = 0; axis < 3; axis++)
+      {
+        if (get(i, axis) < get(min[axis], axis))
+          min[axis] = i;
+        if (get(i, axis) > get(max[axis], axis))
+          max[axis] = i;
+      }
+    }
+    for (int axis = 0; axis < 3; axis++)
+      maxAbs += Math.max(Math.abs(get(min[axis], axis)), Math.abs(get(max[axis], axis)));
+    tolerance_ = 3 * Math.ulp(1.0) * maxAbs;
+    
+    // The two points furthest apart along an axis
+    int axis = 0;
+    for (int i = 1; i < 3; i++)
+    {
+      if (get(max[i], i) - get(min[i], i) > get(max[axis], axis) - get(min[axis], axis))
+        axis = i;
+    }
+    int v0 = min[axis];
+    int v1 = max[axis];
+    if (get(v1, axis) - get(v0, axis) <= tolerance_)
+      return false;
+    
+    // The point furthest from the line through them
+    double ux = (double) xs_[v1] - xs_[v0];
+    double uy = (double) ys_[v1] - ys_[v0];
+    double uz = (double) zs_[v1] - zs_[v0];
+    int v2 = -1;
+    double distance = 0;
+    for (int i = 0; i < count; i++)
+    {
+      double px = (double) xs_[i] - xs_[v0];
+      double py = (double) ys_[i] - ys_[v0];
+      double pz = (double) zs_[i] - zs_[v0];
+      double cx = uy * pz - uz * py;
+      double cy = uz * px - ux * pz;
+      double cz = ux * py - uy * px;
+      double dst = cx * cx + cy * cy + cz * cz;
+      if (dst > distance)
+      {
+        distance = dst;
+        v2 = i;
+      }
+    }
+    if (v2 < 0 || Math.sqrt(distance / (ux * ux + uy * uy + uz * uz)) <= tolerance_)
+      return false;
+    
+    // The point furthest from the plane through all three
+    int base = createFace(v0, v1, v2);
+    int v3 = -1;
+    distance = 0;
+    for (int i = 0; i < count; i++)
+    {
+      double dst = getDistance(base, i);
+      if (Math.abs(dst) > Math.abs(distance))
+      {
+        distance = dst;
+        v3 = i;
+      }
+    }
+    if (v3 < 0 || Math.abs(distance) <= tolerance_)
+      return false;
+    
+    faceCount_ = 0;
+    if (distance > 0)
+    {
+      createFace(v0, v2, v1);
+      createFace(v0, v1, v3);
+      createFace(v1, v2, v3);
+      createFace(v2, v0, v3);
+    }
+    else
+    {
+      createFace(v0, v1, v2);
+      createFace(v1, v0, v3);
+      createFace(v2, v1, v3);
+      createFace(v0, v2, v3);
+    }
+    
+    // Connect the twins, every edge is checked against the edges of the other
+    //  faces
+    for (int e = 0; e < 12; e++)
+    {
+      for (int f = 0; f < 12; f++)
+      {
+        if (getTail(e) == edgeHead_[f] && edgeHead_[e] == getTail(f))
+          edgeTwin_[e] = f;
+      }
+    }
+    
+    for (int i = 0; i < count; i++)
+    {
+      if (i == v0 || i == v1 || i == v2 || i == v3)
+        continue;
+      
+      for (int face = 0; face < 4; face++)
+      {
+        if (getDistance(face, i) > tolerance_)
+        {
+          addConflict(face, i);
+          break;
+        }
+      }
+    }
+    
+    for (int face = 0; face < 4; face++)
+      addPending(face);
+    
+    return true;
+  }
+  
+  
+  /**
+   * Adds the point in the conflict list of the face that is furthest from it
+   *  to the hull.
+   */
+  private void addPoint(int face)
+  {
+    int eye = faceConflicts_[face];
+    double distance = getDistance(face, eye);
+    for (int p = nextConflict_[eye]; p >= 0; p = nextConflict_[p])
+    {
+      double dst = getDistance(face, p);
+      if (dst > distance)
+      {
+        distance = dst;
+        eye = p;
+      }
+    }
+    
+    horizonSize_ = 0;
+    unclaimedSize_ = 0;
+    computeHorizon(face, eye);
+    
+    // Create a face from every horizon edge to the eye point, the horizon is
+    //  a closed loop so consecutive faces share an edge
+    int firstFace = faceCount_;
+    for (int i = 0; i < horizonSize_; i++)
+    {
+      int edge = horizon_[i];
+      int newFace = createFace(getTail(edge), edgeHead_[edge], eye);
+      
+      int twin = edgeTwin_[edge];
+      edgeTwin_[3 * newFace] = twin;
+      edgeTwin_[twin] = 3 * newFace;
+      
+      if (i > 0)
+      {
+        edgeTwin_[3 * newFace + 2] = 3 * newFace - 2;
+        edgeTwin_[3 * newFace - 2] = 3 * newFace + 2;
+      }
+    }
+    int lastFace = faceCount_ - 1;
+    edgeTwin_[3 * firstFace + 2] = 3 * lastFace + 1;
+    edgeTwin_[3 * lastFace + 1] = 3 * firstFace + 2;
+    
+    // Give the points of the removed faces to the new faces that they are
+    //  the furthest outside of, the points inside the new faces are dropped
+    for (int i = 0; i < unclaimedSize_; i++)
+    {
+      int p = unclaimed_[i];
+      if (p == eye)
+        continue;
+      
+      int best = -1;
+      distance = tolerance_;
+      for (int f = firstFace; f <= lastFace; f++)
+      {
+        double dst = getDistance(f, p);
+        if (dst > distance)
+        {
+          distance = dst;
+          best = f;
+        }
+      }
+      
+      if (best >= 0)
+        addConflict(best, p);
+    }
+    
+    for (int f = firstFace; f <= lastFace; f++)
+      addPending(f);
+  }
+  
+  
+  /**
+   * Removes the faces that are visible from the eye point, starting with the
+   *  specified face, and puts the horizon edges (the edges of the visible
+   *  faces that border hidden faces) in counter-clockwise order in the horizon
+   *  array. This is a depth first search that keeps the edge to continue from
+   *  and the amount of edges left to check for every face on a stack.
+   */
+  private void computeHorizon(int face, int eye)
+  {
+    deleteFace(face);
+    
+    int top = 0;
+    stack_[top++] = 3 * face;
+    stack_[top++] = 3;
+    
+    while (top > 0)
+    {
+      int edge = stack_[top - 2];
+      int left = stack_[top - 1];
+      if (left == 0)
+      {
+        top -= 2;
+        continue;
+      }
+      
+      stack_[top - 2] = getNext(edge);
+      stack_[top - 1] = left - 1;
+      
+      int twin = edgeTwin_[edge];
+      int neighbour = twin / 3;
+      if (faceDeleted_[neighbour])
+        continue;
+      
+      if (getDistance(neighbour, eye) > tolerance_)
+      {
+        deleteFace(neighbour);
+        
+        if (top + 2 > stack_.length)
+          stack_ = Arrays.copyOf(stack_, stack_.length * 2);
+        stack_[top++] = getNext(twin);
+        stack_[top++] = 2;
+      }
+      else
+      {
+        if (horizonSize_ == horizon_.length)
+          horizon_ = Arrays.copyOf(horizon_, horizonSize_ * 2);
+        horizon_[horizonSize_++] = edge;
+      }
+    }
+  }
+  
+  
+  private void deleteFace(int face)
+  {
+    faceDeleted_[face] = true;
+    
+    for (int p = faceConflicts_[face]; p >= 0; p = nextConflict_[p])
+    {
+      if (unclaimedSize_ == unclaimed_.length)
+        unclaimed_ = Arrays.copyOf(unclaimed_, unclaimedSize_ * 2);
+      unclaimed_[unclaimedSize_++] = p;
+    }
+    faceConflicts_[face] = -1;
+  }
+  
+  
+  /**
+   * Creates a face with the specified vertices in counter-clockwise order,
+   *  the twins of the edges are not set.
+   */
+  private int createFace(int a, int b, int c)
+  {
+    int face = faceCount_++;
+    if (faceCount_ > faceDeleted_.length)
+    {
+      int capacity = faceDeleted_.length * 2;
+      edgeHead_ = Arrays.copyOf(edgeHead_, capacity * 3);
+      edgeTwin_ = Arrays.copyOf(edgeTwin_, capacity * 3);
+      faceNormals_ = Arrays.copyOf(faceNormals_, capacity * 4);
+      faceDeleted_ = Arrays.copyOf(faceDeleted_, capacity);
+      faceConflicts_ = Arrays.copyOf(faceConflicts_, capacity);
+    }
+    
+    edgeHead_[3 * face]     = b;
+    edgeHead_[3 * face + 1] = c;
+    edgeHead_[3 * face + 2] = a;
+    faceDeleted_[face] = false;
+    faceConflicts_[face] = -1;
+    
+    double abx = (double) xs_[b] - xs_[a];
+    double aby = (double) ys_[b] - ys_[a];
+    double abz = (double) zs_[b] - zs_[a];
+    double acx = (double) xs_[c] - xs_[a];
+    double acy = (double) ys_[c] - ys_[a];
+    double acz = (double) zs_[c] - zs_[a];
+    
+    double nx = aby * acz - abz * acy;
+    double ny = abz * acx - abx * acz;
+    double nz = abx * acy - aby * acx;
+    double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+    if (length > 0)
+    {
+      nx /= length;
+      ny /= length;
+      nz /= length;
+    }
+    
+    // The plane goes through the centroid, which is more accurate than using
+    //  one of the vertices
+    double cx = ((double) xs_[a] + xs_[b] + xs_[c]) / 3;
+    double cy = ((double) ys_[a] + ys_[b] + ys_[c]) / 3;
+    double cz = ((double) zs_[a] + zs_[b] + zs_[c]) / 3;
+    
+    faceNormals_[4 * face]     = nx;
+    faceNormals_[4 * face + 1] = ny;
+    faceNormals_[4 * face + 2] = nz;
+    faceNormals_[4 * face + 3] = nx * cx + ny * cy + nz * cz;
+    
+    return face;
+  }
+  
+  
+  private void addConflict(int face, int point)
+  {
+    nextConflict_[point] = faceConflicts_[face];
+    faceConflicts_[face] = point;
+  }
+  
+  
+  private void addPending(int face)
+  {
+    if (pendingSize_ == pending_.length)
+      pending_ = Arrays.copyOf(pending_, pendingSize_ * 2);
+    pending_[pendingSize_++] = face;
+  }
+  
+  
+  private void collectTriangles()
+  {
+    for (int face = 0; face < faceCount_; face++)
+    {
+      if (faceDeleted_[face])
+        continue;
+      
+      if (3 * triangleCount_ + 3 > triangles_.length)
+        triangles_ = Arrays.copyOf(triangles_, triangles_.length * 2);
+      
+      triangles_[3 * triangleCount_]     = edgeHead_[3 * face + 2];
+      triangles_[3 * triangleCount_ + 1] = edgeHead_[3 * face];
+      triangles_[3 * triangleCount_ + 2] = edgeHead_[3 * face + 1];
+      triangleCount_++;
+    }
+  }
+  
+  
+  /**
+   * Returns the signed distance from the plane of the face to the point,
+   *  positive if the point is outside.
+   */
+  private double getDistance(int face, int point)
+  {
+    return faceNormals_[4 * face] * xs_[point] +
+           faceNormals_[4 * face + 1] * ys_[point] +
+           faceNormals_[4 * face + 2] * zs_[point] -
+           faceNormals_[4 * face + 3];
+  }
+  
+  
+  private int getTail(int edge)
+  {
+    return edgeHead_[getPrevious(edge)];
+  }
+  
+  
+  private static int getNext(int edge)
+  {
+    return edge % 3 == 2 ? edge - 2 : edge + 1;
+  }
+  
+  
+  private static int getPrevious(int edge)
+  {
+    return edge % 3 == 0 ? edge + 2 : edge - 1;
+  }
+  
+  
+  private float get(int point, int axis)
+  {
+    return axis == 0 ? xs_[point] : (axis == 1 ? ys_[point] : zs_[point]);
+  }
+}
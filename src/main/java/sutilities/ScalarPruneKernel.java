@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+/**
+ * The pruning step of the hull algorithms, which discards the points that are
+ *  trivially inside the hull before the real work starts. The four extreme
+ *  points along the diagonals (largest and smallest x + y and x - y) span a
+ *  quadrilateral inside the hull, and the points strictly inside the rectangle
+ *  inscribed in it are dropped. The rectangle is inside the hull for any four
+ *  input points, so a kernel may pick slightly different extremes (due to
+ *  rounding) without changing the hull.
+ * </br>
+ * </br>This is the scalar implementation, {@link PruneKernel#INSTANCE} may be
+ *  a faster subclass depending on the platform.
+ * @author Sebastian Hjelm
+ */
+class ScalarPruneKernel
+{
+  /**
+   * Puts the indices of the points that may be on the hull in the specified
+   *  array and returns how many there are. Points that are strictly inside the
+   *  rectangle inscribed in the quadrilateral of the four extreme points (along
+   *  the diagonals) can't be on the hull and are left out.
+   */
+  int prune(float[] xs, float[] ys, int offset, int count, int[] result)
+  {
+    int topLeft     = offset;
+    int topRight    = offset;
+    int bottomLeft  = offset;
+    int bottomRight = offset;
+    
+    double maxSum  = (double) xs[offset] + ys[offset];
+    double minSum  = maxSum;
+    double maxDiff = (double) xs[offset] - ys[offset];
+    double minDiff = maxDiff;
+    
+    for (int i = offset + 1; i < offset + count; i++)
+    {
+      double sum  = (double) xs[i] + ys[i];
+      double diff = (double) xs[i] - ys[i];
+      
+      if (sum > maxSum)
+      {
+        maxSum = sum;
+        topRight = i;
+      }
+      if (sum < minSum)
+      {
+        minSum = sum;
+        bottomLeft = i;
+      }
+      if (diff < minDiff)
+      {
+        minDiff = diff;
+        topLeft = i;
+      }
+      if (diff > maxDiff)
+      {
+        maxDiff = diff;
+        bottomRight = i;
+      }
+    }
+    
+    return filter(xs, ys, offset, offset + count, topLeft, topRight, bottomLeft, bottomRight, result, 0);
+  }
+  
+  
+  /**
+   * Puts the indices in the specified range of the points that are not
+   *  strictly inside the rectangle inscribed in the quadrilateral of the
+   *  specified extreme points in the result array, starting at the specified
+   *  position. Returns the position after the last index put.
+   */
+  static int filter(float[] xs, float[] ys, int from, int to, int topLeft, int topRight, int bottomLeft, int bottomRight, int[] result, int size)
+  {
+    float boundTopY    = Math.min(ys[topRight], ys[topLeft]);
+    float boundBottomY = Math.max(ys[bottomRight], ys[bottomLeft]);
+    float boundLeftX   = Math.max(xs[bottomLeft], xs[topLeft]);
+    float boundRightX  = Math.min(xs[topRight], xs[bottomRight]);
+    
+    for (int i = from; i < to; i++)
+    {
+      float x = xs[i];
+      float y = ys[i];
+      
+      if (!(x > boundLeftX   && x < boundRightX &&
+            y > boundBottomY && y < boundTopY))
+        result[size++] = i;
+    }
+    
+    return size;
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The convex hull of the most recent points of a stream, either the last N
+ *  points or the points newer than some timestamp. Points are evicted in the
+ *  order they were added.
+ * </br>
+ * </br>The window is a queue made of two stacks. New points go on the back
+ *  stack, whose hull is maintained with an {@link IncrementalHull}. Points are
+ *  evicted from the front stack, whose hull is maintained with a second
+ *  incremental hull. When the front stack runs out the back stack is moved
+ *  over, and its points are added to the front hull newest first while the
+ *  points that each addition removes from the hull are logged. The oldest
+ *  point of the window is then always the latest addition, so evicting it
+ *  only undoes that addition. Both moving and evicting a point are amortised
+ *  O(log h), and the memory used is O(n) for a window of n points. The hull of
+ *  the window is the hull of the two stack hulls, which makes
+ *  {@link #getHull()} O(h log h) no matter how large the window is.
+ * </br>
+ * </br>This class is not thread safe.
+ * @author Sebastian Hjelm
+ */
+public class SlidingWindowHull
+{
+  private final int maxSize_;
+  
+  private float[] backXs_;
+  private float[] backYs_;
+  private long[] backTimes_;
+  private int backSize_;
+  private final IncrementalHull backHull_;
+  
+  private float[] frontXs_;
+  private float[] frontYs_;
+  private long[] frontTimes_;
+  private int frontStart_;
+  private int frontEnd_;
+  private final IncrementalHull frontHull_;
+  private final IncrementalHull.UndoLog frontLog_;
+  
+  private final PointBuffer mergeBuffer_;
+  private final HullWorkspace workspace_;
+  
+  
+  /**
+   * Creates a new sliding window hull without a size limit, points are only
+   *  evicted with {@link #evictOlderThan(long)} and {@link #evictOldest()}.
+   */
+  public SlidingWindowHull()
+  {
+    this(Integer.MAX_VALUE);
+  }
+  
+  /**
+   * Creates a new sliding window hull that contains at most the specified
+   *  amount of points, the oldest point is evicted when a point is added to a
+   *  full window.
+   * @param maxSize The size of the window
+   * @throws IllegalArgumentException If the size is less than 1
+   */
+  public SlidingWindowHull(int maxSize)
+  {
+    if (maxSize < 1)
+      throw new IllegalArgumentException("The window size must be positive: " + maxSize);
+    
+    maxSize_ = maxSize;
+    
+    int capacity = Math.min(maxSize, 64);
+    backXs_ = new float[capacity];
+    backYs_ = new float[capacity];
+    backTimes_ = new long[capacity];
+    backHull_ = new IncrementalHull();
+    
+    frontXs_ = new float[capacity];
+    frontYs_ = new float[capacity];
+    frontTimes_ = new long[capacity];
+    frontHull_ = new IncrementalHull();
+    frontLog_ = new IncrementalHull.UndoLog();
+    
+    mergeBuffer_ = new PointBuffer();
+    workspace_ = new HullWorkspace();
+  }
+  
+  
+  /**
+   * Adds the specified point to the window, with the current time
+   *  ({@link System#currentTimeMillis()}) as timestamp.
+   * @param point The point to add
+   */
+  public void add(Point point)
+  {
+    add(point.x, point.y, System.currentTimeMillis());
+  }
+  
+  
+  /**
+   * Adds the specified point to the window.
+   * @param point The point to add
+   * @param timestamp The timestamp of the point
+   */
+  public void add(Point point, long timestamp)
+  {
+    add(point.x, point.y, timestamp);
+  }
+  
+  
+  /**
+   * Adds the specified point to the window.
+   * @param x The x coordinate
+   * @param y The y coordinate
+   * @param timestamp The timestamp of the point
+   */
+  public void add(float x, float y, long timestamp)
+  {
+    if (size() == maxSize_)
+      evictOldest();
+    
+    if (backSize_ == backXs_.length)
+    {
+      int capacity = Math.min(maxSize_, backSize_ * 2);
+      backXs_ = Arrays.copyOf(backXs_, capacity);
+      backYs_ = Arrays.copyOf(backYs_, capacity);
+      backTimes_ = Arrays.copyOf(backTimes_, capacity);
+    }
+    
+    backXs_[backSize_] = x;
+    backYs_[backSize_] = y;
+    backTimes_[backSize_] = timestamp;
+    backSize_++;
+    
+    backHull_.add(x, y);
+  }
+  
+  
+  /**
+   * Evicts the oldest point from the window.
+   * @return True if a point was evicted, false if the window was empty
+   */
+  public boolean evictOldest()
+  {
+    if (frontStart_ == frontEnd_)
+    {
+      if (backSize_ == 0)
+        return false;
+      transfer();
+    }
+    
+    frontHull_.undo(frontLog_);
+    frontStart_++;
+    return true;
+  }
+  
+  
+  /**
+   * Evicts the points with a timestamp before the specified one. Eviction stops
+   *  at the first point (in the order they were added) that is new enough.
+   * @param timestamp The timestamp of the oldest point to keep
+   * @return The amount of points evicted
+   */
+  public int evictOlderThan(long timestamp)
+  {
+    int evicted = 0;
+    while (size() > 0 && getOldestTimestamp() < timestamp)
+    {
+      evictOldest();
+      evicted++;
+    }
+    
+    return evicted;
+  }
+  
+  
+  /**
+   * Returns the timestamp of the oldest point in the window.
+   * @return The oldest timestamp
+   * @throws IllegalStateException If the window is empty
+   */
+  public long getOldestTimestamp()
+  {
+    if (frontStart_ < frontEnd_)
+      return frontTimes_[frontStart_];
+    if (backSize_ > 0)
+      return backTimes_[0];
+    
+    throw new IllegalStateException("The window is empty");
+  }
+  
+  
+  /**
+   * Returns the amount of points in the window.
+   * @return The size of the window
+   */
+  public int size()
+  {
+    return frontEnd_ - frontStart_ + backSize_;
+  }
+  
+  
+  /**
+   * Returns the convex hull of the points in the window, in the same order as
+   *  {@link QuickHull} returns it.
+   * @return The hull points
+   */
+  public List<Point> getHull()
+  {
+    mergeBuffer_.clear();
+    
+    for (Point p : frontHull_.getHull())
+      mergeBuffer_.add(p.x, p.y);
+    for (Point p : backHull_.getHull())
+      mergeBuffer_.add(p.x, p.y);
+    
+    int size = MonotoneChain.computeIndices(mergeBuffer_, workspace_);
+    int[] hull = workspace_.getHull();
+    
+    List<Point> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++)
+      result.add(mergeBuffer_.get(hull[i]));
+    
+    return result;
+  }
+  
+  
+  /**
+   * Removes all points from the window.
+   */
+  public void clear()
+  {
+    backSize_ = 0;
+    backHull_.clear();
+    
+    frontStart_ = 0;
+    frontEnd_ = 0;
+    frontHull_.clear();
+    frontLog_.clear();
+  }
+  
+  
+  /**
+   * Moves the back stack to the (empty) front stack and adds its points to the
+   *  front hull, newest first, so the oldest point can be evicted by undoing
+   *  the latest addition.
+   */
+  private void transfer()
+  {
+    float[] xs = frontXs_;
+    float[] ys = frontYs_;
+    long[] times = frontTimes_;
+    
+    frontXs_ = backXs_;
+    frontYs_ = backYs_;
+    frontTimes_ = backTimes_;
+    frontStart_ = 0;
+    frontEnd_ = backSize_;
+    
+    backXs_ = xs;
+    backYs_ = ys;
+    backTimes_ = times;
+    backSize_ = 0;
+    backHull_.clear();
+    
+    // Every addition has been undone by the evictions, so the hull and log
+    //  are already empty
+    for (int i = frontEnd_ - 1; i >= 0; i--)
+      frontHull_.add(frontXs_[i], frontYs_[i], frontLog_);
+  }
+}
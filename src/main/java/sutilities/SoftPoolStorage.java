@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+
+/**
+ * A {@link PoolStorage} that only keeps soft references to its elements, so
+ *  the garbage collector may reclaim them when memory runs low. Elements that
+ *  have been reclaimed are skipped when polling, and the references to them are
+ *  removed once they make up half of the storage.
+ * </br>
+ * </br>This storage is meant as an overflow tier that is used rarely, so it is
+ *  simply guarded by a monitor.
+ * @author Sebastian Hjelm
+ *
+ * @param <E> The type of elements in the storage
+ */
+class SoftPoolStorage<E> implements PoolStorage<E>
+{
+  private ArrayList<SoftReference<E>> references_;
+  private ReferenceQueue<E> queue_;
+  
+  private int cleared_;
+  
+  
+  public SoftPoolStorage()
+  {
+    references_ = new ArrayList<SoftReference<E>>();
+    queue_      = new ReferenceQueue<E>();
+  }
+  
+  
+  @Override
+  public synchronized E poll()
+  {
+    while (!references_.isEmpty())
+    {
+      E element = references_.remove(references_.size() - 1).get();
+      if (element != null)
+        return element;
+    }
+    
+    return null;
+  }
+  
+  
+  @Override
+  public synchronized void offer(E element)
+  {
+    expunge();
+    references_.add(new SoftReference<E>(element, queue_));
+  }
+  
+  
+  @Override
+  public synchronized int poll(E[] destination, int offset, int amount)
+  {
+    int count = 0;
+    while (count < amount && !references_.isEmpty())
+    {
+      E element = references_.remove(references_.size() - 1).get();
+      if (element != null)
+        destination[offset + count++] = element;
+    }
+    
+    return count;
+  }
+  
+  
+  @Override
+  public synchronized void offer(E[] elements, int offset, int amount)
+  {
+    expunge();
+    for (int i = offset; i < offset + amount; i++)
+      references_.add(new SoftReference<E>(elements[i], queue_));
+  }
+  
+  
+  private void expunge()
+  {
+    while (queue_.poll() != null)
+      cleared_++;
+    
+    if (cleared_ > 0 && cleared_ >= references_.size() / 2)
+    {
+      references_.removeIf(reference -> reference.get() == null);
+      cleared_ = 0;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+/**
+ * A {@link PoolStorage} that guards a linked list of elements with a monitor.
+ *  Nodes that become empty are kept in a second list and reused, so a pool in
+ *  steady state doesn't allocate anything when elements are stored.
+ * @author Sebastian Hjelm
+ *
+ * @param <E> The type of elements in the storage
+ */
+class SynchronizedPoolStorage<E> implements PoolStorage<E>
+{
+  private Object lock_;
+  
+  /**
+   * The first node that contains an unused object.
+   */
+  private PoolNode<E> firstObjectNode_;
+  /**
+   * The first unused node.
+   */
+  private PoolNode<E> firstStoredNode_;
+  
+  
+  public SynchronizedPoolStorage()
+  {
+    lock_ = new Object();
+  }
+  
+  
+  @Override
+  public E poll()
+  {
+    synchronized (lock_)
+    {
+      if (firstObjectNode_ == null)
+        return null;
+      
+      PoolNode<E> node = firstObjectNode_;
+      E result = node.element;
+      
+      firstObjectNode_ = node.next;
+      
+      node.next    = firstStoredNode_;
+      node.element = null;
+      
+      firstStoredNode_ = node;
+      
+      return result;
+    }
+  }
+  
+  
+  @Override
+  public void offer(E element)
+  {
+    synchronized (lock_)
+    {
+      PoolNode<E> node = null;
+      
+      if (firstStoredNode_ != null)
+      {
+        node = firstStoredNode_;
+        
+        firstStoredNode_ = node.next;
+      }
+      else
+      {
+        node = new PoolNode<E>();
+      }
+      
+      node.element = element;
+      node.next = firstObjectNode_;
+      
+      firstObjectNode_ = node;
+    }
+  }
+  
+  
+  @Override
+  public int poll(E[] destination, int offset, int amount)
+  {
+    synchronized (lock_)
+    {
+      int count = 0;
+      while (count < amount && firstObjectNode_ != null)
+      {
+        PoolNode<E> node = firstObjectNode_;
+        destination[offset + count++] = node.element;
+        
+        firstObjectNode_ = node.next;
+        
+        node.next    = firstStoredNode_;
+        node.element = null;
+        
+        firstStoredNode_ = node;
+      }
+      
+      return count;
+    }
+  }
+  
+  
+  @Override
+  public void offer(E[] elements, int offset, int amount)
+  {
+    synchronized (lock_)
+    {
+      for (int i = offset; i < offset + amount; i++)
+      {
+        PoolNode<E> node = firstStoredNode_;
+        
+        if (node != null)
+          firstStoredNode_ = node.next;
+        else
+          node = new PoolNode<E>();
+        
+        node.element = elements[i];
+        node.next = firstObjectNode_;
+        
+        firstObjectNode_ = node;
+      }
+    }
+  }
+  
+  
+  private static class PoolNode<E>
+  {
+    public PoolNode<E> next;
+    
+    public E element;
+  }
+}
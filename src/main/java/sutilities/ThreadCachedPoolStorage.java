@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link PoolStorage} that puts a small per-thread cache (a 'magazine') in
+ *  front of a shared storage. Polling and offering single elements only touch
+ *  the magazine of the calling thread. When a magazine runs empty it is refilled
+ *  with half its capacity from the shared storage, and when it is full half of
+ *  it is spilled back, both in a single batch operation.
+ * </br>
+ * </br>Elements in the magazine of a thread are only visible to that thread.
+ *  If the thread terminates, or if the storage itself is no longer reachable,
+ *  the elements in the magazine are left to the garbage collector. Since the
+ *  magazines of other threads can't be reached by the calling thread,
+ *  {@link #reachableSize()} only counts the elements in the shared storage
+ *  and in the calling thread's own magazine.
+ * @author Sebastian Hjelm
+ *
+ * @param <E> The type of elements in the storage
+ */
+class ThreadCachedPoolStorage<E> implements PoolStorage<E>
+{
+  private PoolStorage<E> shared_;
+  private LongAdder sharedSize_;
+  private int capacity_;
+  
+  private ThreadLocal<Magazine<E>> magazine_;
+  
+  
+  /**
+   * Creates a new storage that caches up to the specified amount of elements
+   *  per thread in front of the specified shared storage.
+   * @param shared The storage that is shared between all threads
+   * @param capacity The capacity of each magazine, at least 2
+   */
+  public ThreadCachedPoolStorage(PoolStorage<E> shared, int capacity)
+  {
+    shared_     = shared;
+    sharedSize_ = new LongAdder();
+    capacity_   = Math.max(2, capacity);
+    
+    // The initial value may not refer to this storage, see Magazine
+    int magazineCapacity = capacity_;
+    magazine_ = ThreadLocal.withInitial(() -> new Magazine<E>(magazineCapacity));
+  }
+  
+  
+  @Override
+  public E poll()
+  {
+    Magazine<E> magazine = magazine_.get();
+    
+    if (magazine.size == 0)
+    {
+      magazine.size = shared_.poll(magazine.elements, 0, capacity_ / 2);
+      if (magazine.size == 0)
+        return null;
+      
+      sharedSize_.add(-magazine.size);
+    }
+    
+    E result = magazine.elements[--magazine.size];
+    magazine.elements[magazine.size] = null;
+    
+    return result;
+  }
+  
+  
+  @Override
+  public void offer(E element)
+  {
+    Magazine<E> magazine = magazine_.get();
+    
+    if (magazine.size == capacity_)
+    {
+      int spilled = capacity_ / 2;
+      int kept    = capacity_ - spilled;
+      
+      shared_.offer(magazine.elements, kept, spilled);
+      sharedSize_.add(spilled);
+      for (int i = kept; i < capacity_; i++)
+        magazine.elements[i] = null;
+      
+      magazine.size = kept;
+    }
+    
+    magazine.elements[magazine.size++] = element;
+  }
+  
+  
+  /**
+   * Polls the elements directly from the shared storage, the magazine of the
+   *  calling thread is only used if the shared storage runs out.
+   */
+  @Override
+  public int poll(E[] destination, int offset, int amount)
+  {
+    int count = shared_.poll(destination, offset, amount);
+    sharedSize_.add(-count);
+    
+    if (count < amount)
+    {
+      Magazine<E> magazine = magazine_.get();
+      while (count < amount && magazine.size > 0)
+      {
+        destination[offset + count++] = magazine.elements[--magazine.size];
+        magazine.elements[magazine.size] = null;
+      }
+    }
+    
+    return count;
+  }
+  
+  
+  /**
+   * Offers the elements directly to the shared storage, bypassing the magazine
+   *  of the calling thread.
+   */
+  @Override
+  public void offer(E[] elements, int offset, int amount)
+  {
+    shared_.offer(elements, offset, amount);
+    sharedSize_.add(amount);
+  }
+  
+  
+  /**
+   * Returns the amount of elements the calling thread can poll, that is the
+   *  elements in the shared storage and in the magazine of the calling
+   *  thread. Elements cached by other threads aren't included, they may never
+   *  become available again if their threads stop using the storage.
+   * </br>
+   * </br>The size is read without blocking, if other threads are using the
+   *  storage at the same time the result may not include their latest changes.
+   * @return The amount of reachable elements
+   */
+  public long reachableSize()
+  {
+    return sharedSize_.sum() + magazine_.get().size;
+  }
+  
+  
+  /**
+   * The elements cached by one thread. A magazine must not refer to the storage
+   *  that owns it, since the thread-local map of each thread holds its
+   *  magazines strongly: if the magazine kept the storage (and with it the
+   *  thread-local key) reachable, the entry would never become stale and the
+   *  elements would stay in memory until the thread terminates, even after the
+   *  pool has been dropped.
+   */
+  private static class Magazine<E>
+  {
+    public E[] elements;
+    public int size;
+    
+    @SuppressWarnings("unchecked")
+    public Magazine(int capacity)
+    {
+      elements = (E[]) new Object[capacity];
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+/**
+ * Selects the pruning kernel used by the hull algorithms. This is the Java 17
+ *  version of the class, which uses {@link VectorPruneKernel} when the
+ *  incubating Vector API module is available (the application is started
+ *  with {@code --add-modules jdk.incubator.vector}) and the scalar kernel
+ *  otherwise.
+ * @author Sebastian Hjelm
+ */
+final class PruneKernel
+{
+  /**
+   * The kernel to use.
+   */
+  static final ScalarPruneKernel INSTANCE = create();
+  
+  
+  private PruneKernel()
+  {
+  }
+  
+  
+  private static ScalarPruneKernel create()
+  {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+    {
+      try
+      {
+        return new VectorPruneKernel();
+      }
+      catch (LinkageError e)
+      {
+        Debugger.warning("PruneKernel: create()", "Couldn't load the Vector API kernel, using the scalar one", e);
+      }
+    }
+    
+    return new ScalarPruneKernel();
+  }
+}
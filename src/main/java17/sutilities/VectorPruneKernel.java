@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Sebastian Hjelm
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ */
+
+package sutilities;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A pruning kernel that uses the Vector API, processing as many points at a
+ *  time as fit in the preferred vector size of the platform. Every lane keeps
+ *  track of its own extreme points, which are combined at the end of the
+ *  scan. The sums and differences are computed in float precision instead of
+ *  double, which may select other extreme points than the scalar kernel when
+ *  points are almost tied, but the result is still valid (see
+ *  {@link ScalarPruneKernel}).
+ * @author Sebastian Hjelm
+ */
+class VectorPruneKernel extends ScalarPruneKernel
+{
+  private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+  
+  
+  @Override
+  int prune(float[] xs, float[] ys, int offset, int count, int[] result)
+  {
+    int lanes = FLOATS.length();
+    if (count < 2 * lanes)
+      return super.prune(xs, ys, offset, count, result);
+    
+    int end = offset + count;
+    int vectorEnd = offset + FLOATS.loopBound(count);
+    
+    FloatVector x = FloatVector.fromArray(FLOATS, xs, offset);
+    FloatVector y = FloatVector.fromArray(FLOATS, ys, offset);
+    IntVector index = IntVector.zero(INTS).addIndex(1).add(offset);
+    
+    FloatVector maxSum  = x.add(y);
+    FloatVector minSum  = maxSum;
+    FloatVector maxDiff = x.sub(y);
+    FloatVector minDiff = maxDiff;
+    IntVector topRight    = index;
+    IntVector bottomLeft  = index;
+    IntVector bottomRight = index;
+    IntVector topLeft     = index;
+    
+    for (int i = offset + lanes; i < vectorEnd; i += lanes)
+    {
+      x = FloatVector.fromArray(FLOATS, xs, i);
+      y = FloatVector.fromArray(FLOATS, ys, i);
+      index = index.add(lanes);
+      
+      FloatVector sum  = x.add(y);
+      FloatVector diff = x.sub(y);
+      
+      VectorMask<Float> mask = sum.compare(VectorOperators.GT, maxSum);
+      maxSum = maxSum.blend(sum, mask);
+      topRight = topRight.blend(index, mask.cast(INTS));
+      
+      mask = sum.compare(VectorOperators.LT, minSum);
+      minSum = minSum.blend(sum, mask);
+      bottomLeft = bottomLeft.blend(index, mask.cast(INTS));
+      
+      mask = diff.compare(VectorOperators.GT, maxDiff);
+      maxDiff = maxDiff.blend(diff, mask);
+      bottomRight = bottomRight.blend(index, mask.cast(INTS));
+      
+      mask = diff.compare(VectorOperators.LT, minDiff);
+      minDiff = minDiff.blend(diff, mask);
+      topLeft = topLeft.blend(index, mask.cast(INTS));
+    }
+    
+    // Combine the lanes, and then include the points after the last full
+    //  vector
+    int tr = topRight.lane(0);
+    int bl = bottomLeft.lane(0);
+    int br = bottomRight.lane(0);
+    int tl = topLeft.lane(0);
+    for (int lane = 1; lane < lanes; lane++)
+    {
+      tr = pick(xs, ys, tr, topRight.lane(lane), 1, 1);
+      bl = pick(xs, ys, bl, bottomLeft.lane(lane), -1, -1);
+      br = pick(xs, ys, br, bottomRight.lane(lane), 1, -1);
+      tl = pick(xs, ys, tl, topLeft.lane(lane), -1, 1);
+    }
+    for (int i = vectorEnd; i < end; i++)
+    {
+      tr = pick(xs, ys, tr, i, 1, 1);
+      bl = pick(xs, ys, bl, i, -1, -1);
+      br = pick(xs, ys, br, i, 1, -1);
+      tl = pick(xs, ys, tl, i, -1, 1);
+    }
+    
+    return filterVectors(xs, ys, offset, vectorEnd, end, tl, tr, bl, br, result);
+  }
+  
+  
+  /**
+   * Returns the point of the two that has the largest value of
+   *  {@code sx * x + sy * y}, or the first one if they are equal.
+   */
+  private static int pick(float[] xs, float[] ys, int current, int candidate, int sx, int sy)
+  {
+    double a = sx * (double) xs[current] + sy * (double) ys[current];
+    double b = sx * (double) xs[candidate] + sy * (double) ys[candidate];
+    
+    return b > a ? candidate : current;
+  }
+  
+  
+  private static int filterVectors(float[] xs, float[] ys, int from, int vectorEnd, int end, int topLeft, int topRight, int bottomLeft, int bottomRight, int[] result)
+  {
+    float boundTopY    = Math.min(ys[topRight], ys[topLeft]);
+    float boundBottomY = Math.max(ys[bottomRight], ys[bottomLeft]);
+    float boundLeftX   = Math.max(xs[bottomLeft], xs[topLeft]);
+    float boundRightX  = Math.min(xs[topRight], xs[bottomRight]);
+    
+    int size = 0;
+    for (int i = from; i < vectorEnd; i += FLOATS.length())
+    {
+      FloatVector x = FloatVector.fromArray(FLOATS, xs, i);
+      FloatVector y = FloatVector.fromArray(FLOATS, ys, i);
+      
+      VectorMask<Float> inside = x.compare(VectorOperators.GT, boundLeftX)
+          .and(x.compare(VectorOperators.LT, boundRightX))
+          .and(y.compare(VectorOperators.GT, boundBottomY))
+          .and(y.compare(VectorOperators.LT, boundTopY));
+      
+      // Write the indices of the lanes that are not inside
+      long kept = inside.not().toLong();
+      while (kept != 0)
+      {
+        result[size++] = i + Long.numberOfTrailingZeros(kept);
+        kept &= kept - 1;
+      }
+    }
+    
+    return filter(xs, ys, vectorEnd, end, topLeft, topRight, bottomLeft, bottomRight, result, size);
+  }
+}